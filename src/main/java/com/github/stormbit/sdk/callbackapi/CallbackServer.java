@@ -0,0 +1,136 @@
+package com.github.stormbit.sdk.callbackapi;
+
+import com.github.stormbit.sdk.clients.Client;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.Request;
+import spark.Response;
+import spark.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Server for receiving events from VK Callback API
+ * <p>
+ * VK sends every event of group by POST request to the server,
+ * events are handled in the same way as events from longpoll server.
+ * More: <a href="https://vk.com/dev/callback_api">link</a>
+ */
+@SuppressWarnings("unused")
+public class CallbackServer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CallbackServer.class);
+
+    /**
+     * Max count of threads of http server
+     */
+    public static final int MAX_THREADS = 16;
+
+    private final Client client;
+    private final String path;
+    private final String confirmationCode;
+    private final String secret;
+
+    private final Service http;
+
+    /**
+     * If true, all events from VK
+     * will be logged to level 'INFO'
+     */
+    private volatile boolean logUpdates = false;
+
+    /**
+     * @param client           Group client
+     * @param port             Port of http server
+     * @param path             Path of requests from VK, for example '/callback'
+     * @param confirmationCode String that server must return to confirm the address, see group settings
+     * @param secret           Secret key from group settings, or null if it is not set
+     */
+    public CallbackServer(Client client, int port, String path, String confirmationCode, String secret) {
+        this.client = client;
+        this.path = path;
+        this.confirmationCode = confirmationCode;
+        this.secret = secret;
+
+        this.http = Service.ignite()
+                .port(port)
+                .threadPool(MAX_THREADS);
+    }
+
+    /**
+     * Start http server and wait until it is ready for requests
+     *
+     * @return this
+     */
+    public CallbackServer start() {
+        http.post(path, this::handle);
+        http.awaitInitialization();
+
+        LOG.info("Started listening to events from VK Callback API on port {}, path {}", http.port(), path);
+        return this;
+    }
+
+    public void stop() {
+        http.stop();
+    }
+
+    public int port() {
+        return http.port();
+    }
+
+    private Object handle(Request request, Response response) {
+
+        JSONObject event;
+
+        try {
+            event = new JSONObject(request.body());
+        } catch (JSONException e) {
+            LOG.error("Bad request to callback server: {}", request.body());
+            response.status(400);
+            return "bad request";
+        }
+
+        if (logUpdates) {
+            LOG.info("Event from callback API: \n{}\n", event);
+        }
+
+        if (client.getId() != null && client.getId() > 0 && event.optInt("group_id") != client.getId()) {
+            LOG.error("Event from callback API for other group: {}", event);
+            response.status(403);
+            return "wrong group";
+        }
+
+        if (event.optString("type").equals("confirmation")) {
+            return confirmationCode;
+        }
+
+        if (secret != null && !secret.isEmpty() && !equals(secret, event.optString("secret"))) {
+            LOG.error("Event from callback API with wrong secret key: {}", event.optString("type"));
+            response.status(403);
+            return "wrong secret";
+        }
+
+        event.remove("secret");
+
+        // VK waits for 'ok' and repeats event if response is late,
+        // so event is only put to the queue of handler here
+        client.longPoll().handleUpdates(new JSONArray().put(event));
+
+        return "ok";
+    }
+
+    /**
+     * Compare strings in constant time
+     */
+    private static boolean equals(String expected, String actual) {
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), actual.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void enableLoggingUpdates(boolean enable) {
+        this.logUpdates = enable;
+    }
+}
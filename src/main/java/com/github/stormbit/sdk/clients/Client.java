@@ -4,19 +4,28 @@ import com.github.stormbit.sdk.callbacks.Callback;
 import com.github.stormbit.sdk.callbacks.CallbackDouble;
 import com.github.stormbit.sdk.callbacks.CallbackFourth;
 import com.github.stormbit.sdk.callbacks.CallbackTriple;
+import com.github.stormbit.sdk.longpoll.CallbackType;
 import com.github.stormbit.sdk.longpoll.LongPoll;
 import com.github.stormbit.sdk.objects.Chat;
 import com.github.stormbit.sdk.objects.Message;
+import com.github.stormbit.sdk.objects.MessageType;
 import com.github.stormbit.sdk.utils.Utils;
 import com.github.stormbit.sdk.utils.vkapi.API;
 import com.github.stormbit.sdk.utils.vkapi.Auth;
+import com.github.stormbit.sdk.utils.vkapi.HttpTransport;
+import com.github.stormbit.sdk.utils.vkapi.SendCoalescer;
+import com.github.stormbit.sdk.utils.vkapi.Transport;
+import com.github.stormbit.sdk.utils.vkapi.TypingManager;
+import com.github.stormbit.sdk.utils.vkapi.UploadServerCache;
 import com.github.stormbit.sdk.utils.vkapi.apis.APIGroup;
 import com.github.stormbit.sdk.utils.vkapi.apis.APIUser;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by PeterSamokhin on 28/09/2017 21:59
@@ -29,22 +38,47 @@ import java.util.concurrent.*;
 public abstract class Client {
 
     /*
-     * Executor services for threadsafing and fast work
+     * Thread pools for threadsafing and fast work
      */
-    public static final ExecutorService service = Executors.newCachedThreadPool();
-    public static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final ClientRuntime runtime;
+    private final boolean ownRuntime;
 
     /*
      * Main params
      */
     private Integer id;
-    private static API api;
+    private API api;
     private LongPoll longPoll;
     private final Auth _auth;
     private String access_token;
     public String token;
 
-    public CopyOnWriteArrayList<Command> commands = new CopyOnWriteArrayList<>();
+    /**
+     * All access tokens of community, first one is 'token'
+     */
+    private List<String> tokens = Collections.emptyList();
+
+    /**
+     * HTTP client of API calls with token, longpoll and uploads
+     */
+    private volatile Transport transport = HttpTransport.getDefault();
+
+    /**
+     * Urls of upload servers that are reused by uploads
+     */
+    private final UploadServerCache uploadServers = new UploadServerCache();
+
+    /**
+     * Joins messages with the same content to different peers
+     */
+    private final SendCoalescer sendCoalescer = new SendCoalescer(this);
+
+    /**
+     * Typing of bot in dialogs, sent not more often than VK shows it
+     */
+    private final TypingManager typing = new TypingManager(this);
+
+    private final CommandRouter commands = new CommandRouter();
     private final ConcurrentHashMap<Integer, Chat> chats = new ConcurrentHashMap<>();
 
     /**
@@ -52,6 +86,13 @@ public abstract class Client {
      * @param password Password of your VK bot account
      */
     Client(String login, String password) {
+        this(login, password, (ClientRuntime) null);
+    }
+
+    Client(String login, String password, ClientRuntime runtime) {
+        this.ownRuntime = runtime == null;
+        this.runtime = ownRuntime ? new ClientRuntime() : runtime;
+
         _auth = new Auth(login, password).auth();
         api = new APIUser(this);
         this.id = Utils.getId(this);
@@ -60,6 +101,13 @@ public abstract class Client {
     }
 
     Client(String login, String password, Auth.Listener listener) {
+        this(login, password, listener, null);
+    }
+
+    Client(String login, String password, Auth.Listener listener, ClientRuntime runtime) {
+        this.ownRuntime = runtime == null;
+        this.runtime = ownRuntime ? new ClientRuntime() : runtime;
+
         _auth = new Auth(login, password, listener).auth();
         api = new APIUser(this);
 
@@ -68,14 +116,60 @@ public abstract class Client {
     }
 
     Client(String access_token, Integer id) {
+        this(access_token, id, null);
+    }
+
+    Client(String access_token, Integer id, ClientRuntime runtime) {
+        this(Collections.singletonList(access_token), id, runtime);
+    }
+
+    /**
+     * @param access_tokens Several access tokens of one community, calls are sent with them in turn
+     * @param id            Community id
+     * @param runtime       Thread pools, or null to create own ones
+     */
+    Client(List<String> access_tokens, Integer id, ClientRuntime runtime) {
+        this(access_tokens, id, runtime, HttpTransport.getDefault());
+    }
+
+    /**
+     * @param access_tokens Several access tokens of one community, calls are sent with them in turn
+     * @param id            Community id
+     * @param runtime       Thread pools, or null to create own ones
+     * @param transport     HTTP client, it is used already for getting of longpoll server
+     */
+    Client(List<String> access_tokens, Integer id, ClientRuntime runtime, Transport transport) {
+        this(access_tokens, id, runtime, transport, true);
+    }
+
+    /**
+     * @param access_tokens Several access tokens of one community, calls are sent with them in turn
+     * @param id            Community id
+     * @param runtime       Thread pools, or null to create own ones
+     * @param transport     HTTP client, it is used already for getting of longpoll server
+     * @param longPoll      true to start listening to longpoll server at once,
+     *                      false if events are received only from Callback API or longpoll is started later
+     */
+    Client(List<String> access_tokens, Integer id, ClientRuntime runtime, Transport transport, boolean longPoll) {
+        this.ownRuntime = runtime == null;
+        this.runtime = ownRuntime ? new ClientRuntime() : runtime;
+        this.transport = transport;
+
         _auth = new Auth();
-        token = access_token;
+        tokens = Collections.unmodifiableList(new ArrayList<>(access_tokens));
+        token = tokens.get(0);
         this.id = id;
         api = new APIGroup(this);
 
-        this.longPoll = new LongPoll(this);
+        this.longPoll = new LongPoll(this, longPoll);
     }
 
+    /**
+     * Replace longpoll of client, old one is stopped.
+     * Longpoll with cursor store is not started: call {@link LongPoll#start()} when callbacks are registered.
+     *
+     * @param LP new longpoll
+     */
     public void setLongPoll(LongPoll LP) {
 
         this.longPoll.off();
@@ -104,6 +198,27 @@ public abstract class Client {
         return _auth;
     }
 
+    /**
+     * Get thread pools of current client
+     *
+     * @return runtime object
+     */
+    public ClientRuntime runtime() {
+        return runtime;
+    }
+
+    /**
+     * Stop listening to longpoll server
+     * and stop thread pools, if they are not shared with other clients
+     */
+    public void shutdown() {
+        this.longPoll.off();
+
+        if (ownRuntime) {
+            runtime.shutdown();
+        }
+    }
+
     /**
      * Get API for making requests
      *
@@ -127,102 +242,102 @@ public abstract class Client {
     /* On every event */
 
     public void onLongPollEvent(Callback<JSONArray> callback) {
-        this.longPoll().registerCallback("OnEveryLongPollEventCallback", callback);
+        this.longPoll().registerCallback(CallbackType.EVERY_LONGPOLL_EVENT, callback);
     }
 
     /* Chats */
     public void onChatJoin(CallbackTriple<Integer, Integer, Integer> callback) {
-        this.longPoll().registerChatCallback("OnChatJoinCallback", callback);
+        this.longPoll().registerCallback(CallbackType.CHAT_JOIN, callback);
     }
 
     public void onChatLeave(CallbackTriple<Integer, Integer, Integer> callback) {
-        this.longPoll().registerChatCallback("OnChatLeaveCallback", callback);
+        this.longPoll().registerCallback(CallbackType.CHAT_LEAVE, callback);
     }
 
     public void onChatTitleChanged(CallbackFourth<String, String, Integer, Integer> callback) {
-        this.longPoll().registerChatCallback("OnChatTitleChangedCallback", callback);
+        this.longPoll().registerCallback(CallbackType.CHAT_TITLE_CHANGED, callback);
     }
 
     public void onChatPhotoChanged(CallbackTriple<JSONObject, Integer, Integer> callback) {
-        this.longPoll().registerChatCallback("onChatPhotoChangedCallback", callback);
+        this.longPoll().registerCallback(CallbackType.CHAT_PHOTO_CHANGED, callback);
     }
 
     public void onChatPhotoRemoved(CallbackDouble<Integer, Integer> callback) {
-        this.longPoll().registerChatCallback("onChatPhotoRemovedCallback", callback);
+        this.longPoll().registerCallback(CallbackType.CHAT_PHOTO_REMOVED, callback);
     }
 
     public void onChatCreated(CallbackTriple<String, Integer, Integer> callback) {
-        this.longPoll().registerChatCallback("onChatCreatedCallback", callback);
+        this.longPoll().registerCallback(CallbackType.CHAT_CREATED, callback);
     }
 
     /* Messages */
     public void onChatMessage(Callback<Message> callback) {
-        this.longPoll().registerCallback("OnChatMessageCallback", callback);
+        this.longPoll().registerCallback(CallbackType.CHAT_MESSAGE, callback);
     }
 
     public void onEveryMessage(Callback<Message> callback) {
-        this.longPoll().registerCallback("OnEveryMessageCallback", callback);
+        this.longPoll().registerCallback(CallbackType.EVERY_MESSAGE, callback);
     }
 
     public void onMessageWithFwds(Callback<Message> callback) {
-        this.longPoll().registerCallback("OnMessageWithFwdsCallback", callback);
+        this.longPoll().registerCallback(CallbackType.MESSAGE_WITH_FWDS, callback);
     }
 
     public void onAudioMessage(Callback<Message> callback) {
-        this.longPoll().registerCallback("OnAudioMessageCallback", callback);
+        this.longPoll().registerCallback(MessageType.AUDIO, callback);
     }
 
     public void onDocMessage(Callback<Message> callback) {
-        this.longPoll().registerCallback("OnDocMessageCallback", callback);
+        this.longPoll().registerCallback(MessageType.DOC, callback);
     }
 
     public void onGifMessage(Callback<Message> callback) {
-        this.longPoll().registerCallback("OnGifMessageCallback", callback);
+        this.longPoll().registerCallback(MessageType.GIF, callback);
     }
 
     public void onLinkMessage(Callback<Message> callback) {
-        this.longPoll().registerCallback("OnLinkMessageCallback", callback);
+        this.longPoll().registerCallback(MessageType.LINK, callback);
     }
 
     public void onMessage(Callback<Message> callback) {
-        this.longPoll().registerCallback("OnMessageCallback", callback);
+        this.longPoll().registerCallback(CallbackType.MESSAGE, callback);
     }
 
     public void onPhotoMessage(Callback<Message> callback) {
-        this.longPoll().registerCallback("OnPhotoMessageCallback", callback);
+        this.longPoll().registerCallback(MessageType.PHOTO, callback);
     }
 
     public void onSimpleTextMessage(Callback<Message> callback) {
-        this.longPoll().registerCallback("OnSimpleTextMessageCallback", callback);
+        this.longPoll().registerCallback(MessageType.SIMPLE_TEXT, callback);
     }
 
     public void onStickerMessage(Callback<Message> callback) {
-        this.longPoll().registerCallback("OnStickerMessageCallback", callback);
+        this.longPoll().registerCallback(MessageType.STICKER, callback);
     }
 
     public void onTyping(Callback<Integer> callback) {
-        this.longPoll().registerCallback("OnTypingCallback", callback);
+        this.longPoll().registerCallback(CallbackType.TYPING, callback);
     }
 
     public void onVideoMessage(Callback<Message> callback) {
-        this.longPoll().registerCallback("OnVideoMessageCallback", callback);
+        this.longPoll().registerCallback(MessageType.VIDEO, callback);
     }
 
     public void onVoiceMessage(Callback<Message> callback) {
-        this.longPoll().registerCallback("OnVoiceMessageCallback", callback);
+        this.longPoll().registerCallback(MessageType.VOICE, callback);
     }
 
     public void onWallMessage(Callback<Message> callback) {
-        this.longPoll().registerCallback("OnWallMessageCallback", callback);
+        this.longPoll().registerCallback(MessageType.WALL, callback);
     }
 
     /* Other */
     public void onFriendOnline(CallbackDouble<Integer, Integer> callback) {
-        this.longPoll().registerAbstractCallback("OnFriendOnlineCallback", callback);
+        this.longPoll().registerCallback(CallbackType.FRIEND_ONLINE, callback);
     }
 
     public void onFriendOffline(CallbackDouble<Integer, Integer> callback) {
-        this.longPoll().registerAbstractCallback("OnFriendOfflineCallback", callback);
+        this.longPoll().registerCallback(CallbackType.FRIEND_OFFLINE, callback);
     }
 
     /* Commands */
@@ -243,6 +358,24 @@ public abstract class Client {
         this.commands.add(new Command(list, callback));
     }
 
+    /**
+     * @param mode     How to find command in text of message
+     * @param callback Callback
+     * @param commands Aliases of command, for REGEX mode strings or patterns
+     */
+    public void onCommand(Command.Mode mode, Callback<Message> callback, Object... commands) {
+        this.commands.add(new Command(commands, mode, callback));
+    }
+
+    /**
+     * Get commands of current client
+     *
+     * @return router of commands
+     */
+    public CommandRouter commands() {
+        return commands;
+    }
+
 
     /**
      * If true, all updates from longpoll server
@@ -258,28 +391,63 @@ public abstract class Client {
      * Command object
      */
     public static class Command {
+
+        /**
+         * How to find command in text of message, case is ignored
+         */
+        public enum Mode {
+
+            /**
+             * Text is equal to command
+             */
+            EXACT,
+
+            /**
+             * Text starts with command
+             */
+            PREFIX,
+
+            /**
+             * Text contains command
+             */
+            CONTAINS,
+
+            /**
+             * Regular expression is found in text
+             */
+            REGEX
+        }
+
         private final Object[] commands;
+        private final Mode mode;
         private final Callback<Message> callback;
 
-        public Command(Object[] commands, Callback<Message> callback) {
+        public Command(Object[] commands, Mode mode, Callback<Message> callback) {
             this.commands = commands;
+            this.mode = mode;
             this.callback = callback;
         }
 
+        public Command(Object[] commands, Callback<Message> callback) {
+            this(commands, Mode.CONTAINS, callback);
+        }
+
         public Command(Object command, Callback<Message> callback) {
-            this.commands = new Object[]{command};
-            this.callback = callback;
+            this(new Object[]{command}, Mode.CONTAINS, callback);
         }
 
         public Command(List<?> command, Callback<Message> callback) {
-            this.commands = command.toArray();
-            this.callback = callback;
+            this(command.toArray(), Mode.CONTAINS, callback);
         }
 
         public Object[] getCommands() {
             return commands;
         }
 
+        public Mode getMode() {
+            return mode;
+        }
+
         public Callback<Message> getCallback() {
             return callback;
         }
@@ -299,6 +467,36 @@ public abstract class Client {
         return this.token;
     }
 
+    public SendCoalescer sendCoalescer() {
+        return this.sendCoalescer;
+    }
+
+    public TypingManager typing() {
+        return this.typing;
+    }
+
+    public UploadServerCache uploadServers() {
+        return this.uploadServers;
+    }
+
+    public Transport transport() {
+        return this.transport;
+    }
+
+    /**
+     * @param transport HTTP client of API calls with token, longpoll and uploads
+     */
+    public void setTransport(Transport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * @return all access tokens, or empty list for user account
+     */
+    public List<String> getTokens() {
+        return this.tokens;
+    }
+
     @Override
     public String toString() {
         return String.format("{\"id\": %s}", id);
@@ -0,0 +1,404 @@
+package com.github.stormbit.sdk.clients;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread pools of client
+ * <p>
+ * Every client has its own runtime by default,
+ * so one slow bot does not stall other bots in the same JVM.
+ * Runtime can be shared between several clients by passing it to their constructors.
+ * <p>
+ * On JDK 21+ runtime can run every callback and request on its own virtual thread,
+ * see {@link #virtual(String)}.
+ */
+@SuppressWarnings("unused")
+public class ClientRuntime {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ClientRuntime.class);
+
+    private static final AtomicInteger runtimesCount = new AtomicInteger();
+
+    /**
+     * Default count of threads for handling updates
+     */
+    public static final int DEFAULT_POOL_SIZE = Math.max(8, Runtime.getRuntime().availableProcessors() * 4);
+
+    /**
+     * Default count of tasks waiting for free thread
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 10000;
+
+    /**
+     * Default count of threads for 'execute' requests of executor
+     */
+    public static final int DEFAULT_REQUESTS_POOL_SIZE = 4;
+
+    private final String name;
+    private final ThreadFactory threadFactory;
+
+    /**
+     * Pool for timers: draining of executor queue
+     */
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    /**
+     * Pool for callbacks
+     */
+    private final ExecutorService service;
+
+    /**
+     * Pool for 'execute' requests and retries of executor, so burst of updates in {@link #service}
+     * does not reject calls. Its tasks are limited by permits of tokens, so its queue is not bounded.
+     */
+    private final ExecutorService requests;
+
+    private final boolean virtual;
+
+    /**
+     * Tasks that are run when runtime is stopped
+     */
+    private final List<Runnable> shutdownHooks = new CopyOnWriteArrayList<>();
+
+    public ClientRuntime() {
+        this("vk-bot-" + runtimesCount.incrementAndGet(), DEFAULT_POOL_SIZE, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param name          Prefix of thread names
+     * @param poolSize      Count of threads for handling updates
+     * @param queueCapacity Count of tasks waiting for free thread, if queue is full task is rejected:
+     *                      updates are handled in the thread that received them
+     */
+    public ClientRuntime(String name, int poolSize, int queueCapacity) {
+        this(name, newPool(name, poolSize, queueCapacity), newRequestsPool(name, DEFAULT_REQUESTS_POOL_SIZE), false);
+    }
+
+    /**
+     * Runtime with own pool for callbacks, for example {@link Executors#newCachedThreadPool()}.
+     * Pool is stopped with runtime.
+     *
+     * @param name    Prefix of thread names
+     * @param service Pool for callbacks
+     */
+    public ClientRuntime(String name, ExecutorService service) {
+        this(name, service instanceof ThreadPoolExecutor ? service : new CountingExecutor(service),
+                newRequestsPool(name, DEFAULT_REQUESTS_POOL_SIZE), false);
+    }
+
+    private ClientRuntime(String name, ExecutorService service, ExecutorService requests, boolean virtual) {
+        this.name = name;
+        this.threadFactory = new NamedThreadFactory(name);
+
+        this.scheduler = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory(name + "-scheduler"));
+        this.scheduler.setRemoveOnCancelPolicy(true);
+
+        this.service = service;
+        this.requests = requests;
+        this.virtual = virtual;
+    }
+
+    /**
+     * Runtime that runs every callback and request on its own virtual thread,
+     * so blocking calls like callSync park the virtual thread instead of holding a pool thread.
+     * <p>
+     * Virtual threads are available only on JDK 21+,
+     * on older JDK runtime with default pool is returned.
+     *
+     * @param name Prefix of thread names
+     * @return runtime
+     */
+    public static ClientRuntime virtual(String name) {
+        ExecutorService service = newVirtualThreadPerTaskExecutor(name + "-virtual-");
+
+        if (service == null) {
+            LOG.error("Virtual threads are not available on JDK {}, runtime {} uses pool of platform threads", Runtime.version(), name);
+            return new ClientRuntime(name, DEFAULT_POOL_SIZE, DEFAULT_QUEUE_CAPACITY);
+        }
+
+        // Virtual threads are not limited, so requests are run by the same executor
+        CountingExecutor counting = new CountingExecutor(service);
+
+        return new ClientRuntime(name, counting, counting, true);
+    }
+
+    public static ClientRuntime virtual() {
+        return virtual("vk-bot-" + runtimesCount.incrementAndGet());
+    }
+
+    private static ThreadPoolExecutor newPool(String name, int poolSize, int queueCapacity) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity),
+                new NamedThreadFactory(name + "-worker"),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        pool.allowCoreThreadTimeOut(true);
+
+        return pool;
+    }
+
+    private static ThreadPoolExecutor newRequestsPool(String name, int poolSize) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new NamedThreadFactory(name + "-requests")
+        );
+        pool.allowCoreThreadTimeOut(true);
+
+        return pool;
+    }
+
+    /**
+     * Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 1).factory()),
+     * called by reflection because library is compiled for Java 11
+     *
+     * @param prefix Prefix of thread names
+     * @return executor, or null if virtual threads are not available
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor(String prefix) {
+        if (Runtime.version().feature() < 21) {
+            return null;
+        }
+
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 1L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+
+            Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+
+            return (ExecutorService) newExecutor.invoke(null, factory);
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            LOG.error("Can not create executor of virtual threads: {}", e.toString());
+            return null;
+        }
+    }
+
+    public ScheduledExecutorService scheduler() {
+        return scheduler;
+    }
+
+    public ExecutorService service() {
+        return service;
+    }
+
+    /**
+     * @return pool for 'execute' requests of executor
+     */
+    public ExecutorService requests() {
+        return requests;
+    }
+
+    /**
+     * Create new thread with name of runtime
+     *
+     * @param task Task of thread
+     * @param name Name of thread
+     * @return not started thread
+     */
+    public Thread newThread(Runnable task, String name) {
+        Thread thread = threadFactory.newThread(task);
+        thread.setName(this.name + "-" + name);
+        return thread;
+    }
+
+    /* Metrics */
+
+    /**
+     * @return count of tasks waiting for free thread
+     */
+    public int getQueueDepth() {
+        return service instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) service).getQueue().size() : 0;
+    }
+
+    /**
+     * @return count of tasks waiting for their time in scheduler
+     */
+    public int getScheduledCount() {
+        return scheduler.getQueue().size();
+    }
+
+    /**
+     * @return count of threads that are running tasks now
+     */
+    public int getActiveCount() {
+        if (service instanceof CountingExecutor) {
+            return ((CountingExecutor) service).active.get();
+        }
+
+        return ((ThreadPoolExecutor) service).getActiveCount();
+    }
+
+    public long getCompletedTaskCount() {
+        if (service instanceof CountingExecutor) {
+            return ((CountingExecutor) service).completed.get();
+        }
+
+        return ((ThreadPoolExecutor) service).getCompletedTaskCount();
+    }
+
+    /**
+     * @return max count of threads, or -1 if every task has its own virtual thread
+     */
+    public int getPoolSize() {
+        return service instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) service).getMaximumPoolSize() : -1;
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Run task when runtime is stopped, for example to fail calls that wait for timers of scheduler
+     *
+     * @param hook Task
+     */
+    public void onShutdown(Runnable hook) {
+        shutdownHooks.add(hook);
+    }
+
+    /**
+     * Stop accepting new tasks and wait for running tasks.
+     * Timers of scheduler are cancelled, and hooks from {@link #onShutdown(Runnable)} are run.
+     *
+     * @param timeout Time to wait
+     * @param unit    Unit of time
+     * @return true if all tasks were finished
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) {
+        scheduler.shutdownNow();
+        service.shutdown();
+        requests.shutdown();
+
+        for (Runnable hook : shutdownHooks) {
+            try {
+                hook.run();
+            } catch (Exception e) {
+                LOG.error("Some error occurred when stopping runtime {}: {}", name, e.toString());
+            }
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        try {
+            if (service.awaitTermination(timeout, unit)
+                    && requests.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+
+        int interrupted = service.shutdownNow().size();
+
+        if (requests != service) {
+            interrupted += requests.shutdownNow().size();
+        }
+
+        LOG.error("Runtime {} was not stopped in time, {} tasks are interrupted", name, interrupted);
+        return false;
+    }
+
+    /**
+     * Stop accepting new tasks and wait for running tasks up to 10 seconds
+     */
+    public void shutdown() {
+        shutdown(10, TimeUnit.SECONDS);
+    }
+
+    public boolean isShutdown() {
+        return service.isShutdown();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{\"name\": \"%s\", \"virtual\": %s, \"pool_size\": %s, \"active\": %s, \"queue_depth\": %s, \"scheduled\": %s}",
+                name, virtual, getPoolSize(), getActiveCount(), getQueueDepth(), getScheduledCount());
+    }
+
+    /**
+     * Executor that counts running and completed tasks of other executor
+     */
+    private static class CountingExecutor extends AbstractExecutorService {
+        private final ExecutorService delegate;
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicLong completed = new AtomicLong();
+
+        CountingExecutor(ExecutorService delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            delegate.execute(() -> {
+                active.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    active.decrementAndGet();
+                    completed.incrementAndGet();
+                }
+            });
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+
+    /**
+     * Thread factory with names 'prefix-1', 'prefix-2', ...
+     */
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, prefix + "-" + count.incrementAndGet());
+            thread.setUncaughtExceptionHandler((t, e) -> LOG.error("Uncaught exception in thread {}: {}", t.getName(), e.toString()));
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.github.stormbit.sdk.clients;
+
+import com.github.stormbit.sdk.clients.Client.Command;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Finds commands in text of messages
+ * <p>
+ * All aliases of commands are compiled into one case-insensitive
+ * Aho-Corasick automaton, so text of message is read only once
+ * whatever count of commands is registered.
+ * Automaton is rebuilt when command is added, and messages that are
+ * being handled at this time use the old one.
+ * <p>
+ * See more: <a href="https://en.wikipedia.org/wiki/Aho%E2%80%93Corasick_algorithm">link</a>
+ */
+@SuppressWarnings("unused")
+public class CommandRouter {
+
+    private final List<Command> commands = new ArrayList<>();
+
+    private volatile Automaton automaton = new Automaton(Collections.emptyList());
+
+    /**
+     * Add command and rebuild automaton
+     *
+     * @param command command
+     */
+    public synchronized void add(Command command) {
+        commands.add(command);
+        automaton = new Automaton(commands);
+    }
+
+    /**
+     * Remove command and rebuild automaton
+     *
+     * @param command command
+     * @return true if command was registered
+     */
+    public synchronized boolean remove(Command command) {
+        if (!commands.remove(command)) {
+            return false;
+        }
+
+        automaton = new Automaton(commands);
+        return true;
+    }
+
+    /**
+     * Find commands in text
+     *
+     * @param text text of message
+     * @return matched commands in order of adding, every command once
+     */
+    public List<Command> match(String text) {
+        return automaton.match(text);
+    }
+
+    public int size() {
+        return automaton.commands.length;
+    }
+
+    /**
+     * @return all commands in order of adding
+     */
+    public List<Command> getCommands() {
+        return Collections.unmodifiableList(Arrays.asList(automaton.commands));
+    }
+
+    /**
+     * Fold case of char, so 'ß', 'ς' and other special letters match their other forms
+     */
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * Immutable compiled automaton of all aliases
+     */
+    private static final class Automaton {
+
+        private final Command[] commands;
+
+        /* Trie: sorted chars of transitions and next states of every state */
+        private final char[][] keys;
+        private final int[][] next;
+        private final int[] fail;
+
+        /* Aliases that end in every state, including ones that end in states of fail links */
+        private final int[][] outputs;
+
+        /* Alias index -> command index, mode and length */
+        private final int[] aliasCommand;
+        private final Command.Mode[] aliasMode;
+        private final int[] aliasLength;
+
+        private final Pattern[] patterns;
+        private final int[] patternCommand;
+
+        Automaton(List<Command> commands) {
+            this.commands = commands.toArray(new Command[0]);
+
+            List<String> aliases = new ArrayList<>();
+            List<Integer> aliasCommands = new ArrayList<>();
+            List<Command.Mode> aliasModes = new ArrayList<>();
+
+            List<Pattern> patterns = new ArrayList<>();
+            List<Integer> patternCommands = new ArrayList<>();
+
+            for (int i = 0; i < this.commands.length; i++) {
+                Command command = this.commands[i];
+
+                for (Object alias : command.getCommands()) {
+                    if (alias == null) continue;
+
+                    if (command.getMode() == Command.Mode.REGEX) {
+                        patterns.add(alias instanceof Pattern ? (Pattern) alias : Pattern.compile(alias.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE));
+                        patternCommands.add(i);
+                    } else if (alias.toString().length() > 0) {
+                        aliases.add(alias.toString());
+                        aliasCommands.add(i);
+                        aliasModes.add(command.getMode());
+                    }
+                }
+            }
+
+            this.patterns = patterns.toArray(new Pattern[0]);
+            this.patternCommand = patternCommands.stream().mapToInt(Integer::intValue).toArray();
+
+            this.aliasCommand = aliasCommands.stream().mapToInt(Integer::intValue).toArray();
+            this.aliasMode = aliasModes.toArray(new Command.Mode[0]);
+            this.aliasLength = aliases.stream().mapToInt(String::length).toArray();
+
+            // Build trie
+            List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+            List<List<Integer>> ends = new ArrayList<>();
+            trie.add(new TreeMap<>());
+            ends.add(new ArrayList<>());
+
+            for (int a = 0; a < aliases.size(); a++) {
+                String alias = aliases.get(a);
+                int state = 0;
+
+                for (int i = 0; i < alias.length(); i++) {
+                    char c = fold(alias.charAt(i));
+                    Integer to = trie.get(state).get(c);
+
+                    if (to == null) {
+                        to = trie.size();
+                        trie.get(state).put(c, to);
+                        trie.add(new TreeMap<>());
+                        ends.add(new ArrayList<>());
+                    }
+                    state = to;
+                }
+                ends.get(state).add(a);
+            }
+
+            int size = trie.size();
+
+            this.keys = new char[size][];
+            this.next = new int[size][];
+            this.fail = new int[size];
+            this.outputs = new int[size][];
+
+            for (int state = 0; state < size; state++) {
+                TreeMap<Character, Integer> transitions = trie.get(state);
+
+                keys[state] = new char[transitions.size()];
+                next[state] = new int[transitions.size()];
+
+                int i = 0;
+                for (Map.Entry<Character, Integer> transition : transitions.entrySet()) {
+                    keys[state][i] = transition.getKey();
+                    next[state][i] = transition.getValue();
+                    i++;
+                }
+            }
+
+            // Fail links by breadth-first search, outputs of fail state are added to outputs of state
+            outputs[0] = ends.get(0).stream().mapToInt(Integer::intValue).toArray();
+
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+
+            for (int child : next[0]) {
+                fail[child] = 0;
+                queue.add(child);
+            }
+
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+
+                List<Integer> out = new ArrayList<>(ends.get(state));
+                for (int alias : outputs[fail[state]]) {
+                    out.add(alias);
+                }
+                outputs[state] = out.stream().mapToInt(Integer::intValue).toArray();
+
+                for (int i = 0; i < keys[state].length; i++) {
+                    char c = keys[state][i];
+                    int child = next[state][i];
+
+                    int f = fail[state];
+                    while (f != 0 && step(f, c) < 0) {
+                        f = fail[f];
+                    }
+                    int to = step(f, c);
+                    fail[child] = to >= 0 ? to : 0;
+
+                    queue.add(child);
+                }
+            }
+        }
+
+        /**
+         * @return next state or -1 if there is no transition
+         */
+        private int step(int state, char c) {
+            int i = Arrays.binarySearch(keys[state], c);
+            return i >= 0 ? next[state][i] : -1;
+        }
+
+        List<Command> match(String text) {
+
+            if (text == null || commands.length == 0) {
+                return Collections.emptyList();
+            }
+
+            boolean[] matched = null;
+            int length = text.length();
+            int state = 0;
+
+            for (int i = 0; i < length; i++) {
+                char c = fold(text.charAt(i));
+
+                int to;
+                while ((to = step(state, c)) < 0 && state != 0) {
+                    state = fail[state];
+                }
+                state = to >= 0 ? to : 0;
+
+                for (int alias : outputs[state]) {
+                    int start = i - aliasLength[alias] + 1;
+
+                    boolean found;
+                    switch (aliasMode[alias]) {
+                        case EXACT: {
+                            found = start == 0 && i == length - 1;
+                            break;
+                        }
+                        case PREFIX: {
+                            found = start == 0;
+                            break;
+                        }
+                        default: {
+                            found = true;
+                        }
+                    }
+
+                    if (found) {
+                        if (matched == null) matched = new boolean[commands.length];
+                        matched[aliasCommand[alias]] = true;
+                    }
+                }
+            }
+
+            for (int p = 0; p < patterns.length; p++) {
+                if ((matched == null || !matched[patternCommand[p]]) && patterns[p].matcher(text).find()) {
+                    if (matched == null) matched = new boolean[commands.length];
+                    matched[patternCommand[p]] = true;
+                }
+            }
+
+            if (matched == null) {
+                return Collections.emptyList();
+            }
+
+            List<Command> answer = new ArrayList<>();
+
+            for (int i = 0; i < matched.length; i++) {
+                if (matched[i]) answer.add(commands[i]);
+            }
+
+            return answer;
+        }
+    }
+}
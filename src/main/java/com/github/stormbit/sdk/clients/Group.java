@@ -1,8 +1,15 @@
 package com.github.stormbit.sdk.clients;
 
+import com.github.stormbit.sdk.callbackapi.CallbackServer;
 import com.github.stormbit.sdk.callbacks.Callback;
+import com.github.stormbit.sdk.longpoll.Events;
+import com.github.stormbit.sdk.longpoll.events.Event;
+import com.github.stormbit.sdk.longpoll.events.EventType;
+import com.github.stormbit.sdk.utils.vkapi.Transport;
 import org.json.JSONObject;
 
+import java.util.List;
+
 /**
  * Created by Storm-bit
  *
@@ -11,6 +18,8 @@ import org.json.JSONObject;
 @SuppressWarnings("unused")
 public class Group extends Client {
 
+    private volatile CallbackServer callbackServer;
+
     /**
      * Default constructor
      *
@@ -21,145 +30,245 @@ public class Group extends Client {
         super(access_token, id);
     }
 
+    /**
+     * @param access_token Access token key
+     * @param id           Group id
+     * @param runtime      Thread pools, can be shared with other clients
+     */
+    public Group(String access_token, Integer id, ClientRuntime runtime) {
+        super(access_token, id, runtime);
+    }
+
+    /**
+     * Community with several access tokens: calls are sent with them in turn,
+     * and every token has its own limit of requests per second.
+     * Longpoll uses the first token.
+     *
+     * @param access_tokens Access tokens of the same community
+     * @param id            Group id
+     * @param runtime       Thread pools, can be shared with other clients, or null
+     */
+    public Group(List<String> access_tokens, Integer id, ClientRuntime runtime) {
+        super(access_tokens, id, runtime);
+    }
+
+    /**
+     * Community with its own HTTP client, for example with proxy.
+     * Unlike {@link #setTransport(Transport)}, transport is used already for getting of longpoll server.
+     *
+     * @param access_tokens Access tokens of the same community
+     * @param id            Group id
+     * @param runtime       Thread pools, can be shared with other clients, or null
+     * @param transport     HTTP client of API calls, longpoll and uploads
+     */
+    public Group(List<String> access_tokens, Integer id, ClientRuntime runtime, Transport transport) {
+        super(access_tokens, id, runtime, transport);
+    }
+
+    /**
+     * Community that receives events only from Callback API, or starts longpoll later by {@code longPoll().start()}.
+     * Longpoll server is not requested, so longpoll can be disabled in group settings.
+     *
+     * @param access_tokens Access tokens of the same community
+     * @param id            Group id
+     * @param runtime       Thread pools, can be shared with other clients, or null
+     * @param transport     HTTP client of API calls, longpoll and uploads
+     * @param longPoll      false to not start listening to longpoll server
+     */
+    public Group(List<String> access_tokens, Integer id, ClientRuntime runtime, Transport transport, boolean longPoll) {
+        super(access_tokens, id, runtime, transport, longPoll);
+    }
+
+    /**
+     * Receive events from Callback API instead of longpoll server
+     * <p>
+     * Longpoll listening is stopped, all registered callbacks stay the same.
+     * To not receive the same events from longpoll before this call,
+     * create group with longPoll = false.
+     * More: <a href="https://vk.com/dev/callback_api">link</a>
+     *
+     * @param port             Port of http server
+     * @param path             Path of requests from VK, for example '/callback'
+     * @param confirmationCode String that server must return to confirm the address, see group settings
+     * @param secret           Secret key from group settings, or null if it is not set
+     * @return started server
+     */
+    public synchronized CallbackServer callbackServer(int port, String path, String confirmationCode, String secret) {
+        if (callbackServer != null) {
+            callbackServer.stop();
+        }
+
+        this.longPoll().off();
+        this.callbackServer = new CallbackServer(this, port, path, confirmationCode, secret).start();
+
+        return callbackServer;
+    }
+
+    public CallbackServer callbackServer() {
+        return callbackServer;
+    }
+
+    @Override
+    public void shutdown() {
+        if (callbackServer != null) {
+            callbackServer.stop();
+        }
+
+        super.shutdown();
+    }
+
     /* LongPoll API */
 
+    /**
+     * Add callback of typed event: {@code onEvent(EventType.WALL_POST_NEW, post -> ...)}
+     * <p>
+     * Fields of event are read from json only when they are asked
+     *
+     * @param type     Typed key of event
+     * @param callback Callback
+     * @param <T>      Class of event
+     */
+    public <T extends Event> void onEvent(EventType<T> type, Callback<T> callback) {
+        this.longPoll().registerCallback(type, callback);
+    }
+
     public void onAudioNew(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("audio_new", callback);
+        this.longPoll().registerCallback(Events.AUDIO_NEW, callback);
     }
 
     public void onBoardPostDelete(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("board_post_delete", callback);
+        this.longPoll().registerCallback(Events.BOARD_POST_DELETE, callback);
     }
 
     public void onBoardPostEdit(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("board_post_edit", callback);
+        this.longPoll().registerCallback(Events.BOARD_POST_EDIT, callback);
     }
 
     public void onBoardPostNew(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("board_post_new", callback);
+        this.longPoll().registerCallback(Events.BOARD_POST_NEW, callback);
     }
 
     public void onBoardPostRestore(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("board_post_restore", callback);
+        this.longPoll().registerCallback(Events.BOARD_POST_RESTORE, callback);
     }
 
     public void onGroupChangePhoto(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("group_change_photo", callback);
+        this.longPoll().registerCallback(Events.GROUP_CHANGE_PHOTO, callback);
     }
 
     public void onGroupChangeSettings(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("group_change_settings", callback);
+        this.longPoll().registerCallback(Events.GROUP_CHANGE_SETTINGS, callback);
     }
 
     public void onGroupJoin(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("group_join", callback);
+        this.longPoll().registerCallback(Events.GROUP_JOIN, callback);
     }
 
     public void onGroupLeave(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("group_leave", callback);
+        this.longPoll().registerCallback(Events.GROUP_LEAVE, callback);
     }
 
     public void onGroupOfficersEdit(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("group_officers_edit", callback);
+        this.longPoll().registerCallback(Events.GROUP_OFFICERS_EDIT, callback);
     }
 
     public void onPollVoteNew(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("poll_vote_new", callback);
+        this.longPoll().registerCallback(Events.POLL_VOTE_NEW, callback);
     }
 
     public void onMarketCommentDelete(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("market_comment_delete", callback);
+        this.longPoll().registerCallback(Events.MARKET_COMMENT_DELETE, callback);
     }
 
     public void onMarketCommentEdit(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("market_comment_edit", callback);
+        this.longPoll().registerCallback(Events.MARKET_COMMENT_EDIT, callback);
     }
 
     public void onMarketCommentNew(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("market_comment_new", callback);
+        this.longPoll().registerCallback(Events.MARKET_COMMENT_NEW, callback);
     }
 
     public void onMarketCommentRestore(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("market_comment_restore", callback);
+        this.longPoll().registerCallback(Events.MARKET_COMMENT_RESTORE, callback);
     }
 
     public void onMessageAllow(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("message_allow", callback);
+        this.longPoll().registerCallback(Events.MESSAGE_ALLOW, callback);
     }
 
     public void onMessageDeny(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("message_deny", callback);
+        this.longPoll().registerCallback(Events.MESSAGE_DENY, callback);
     }
 
     public void onMessageNew(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("message_new", callback);
+        this.longPoll().registerCallback(Events.MESSAGE_NEW, callback);
     }
 
     public void onMessageReply(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("message_reply", callback);
+        this.longPoll().registerCallback(Events.MESSAGE_REPLY, callback);
     }
 
     public void onPhotoCommentEdit(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("photo_comment_edit", callback);
+        this.longPoll().registerCallback(Events.PHOTO_COMMENT_EDIT, callback);
     }
 
     public void onPhotoCommentNew(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("photo_comment_new", callback);
+        this.longPoll().registerCallback(Events.PHOTO_COMMENT_NEW, callback);
     }
 
     public void onPhotoCommentRestore(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("photo_comment_restore", callback);
+        this.longPoll().registerCallback(Events.PHOTO_COMMENT_RESTORE, callback);
     }
 
     public void onPhotoNew(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("photo_new", callback);
+        this.longPoll().registerCallback(Events.PHOTO_NEW, callback);
     }
 
     public void onPhotoCommentDelete(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("photo_comment_delete", callback);
+        this.longPoll().registerCallback(Events.PHOTO_COMMENT_DELETE, callback);
     }
 
     public void onVideoCommentEdit(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("video_comment_edit", callback);
+        this.longPoll().registerCallback(Events.VIDEO_COMMENT_EDIT, callback);
     }
 
     public void onVideoCommentNew(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("video_comment_new", callback);
+        this.longPoll().registerCallback(Events.VIDEO_COMMENT_NEW, callback);
     }
 
     public void onVideoCommentRestore(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("video_comment_restore", callback);
+        this.longPoll().registerCallback(Events.VIDEO_COMMENT_RESTORE, callback);
     }
 
     public void onVideoNew(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("video_new", callback);
+        this.longPoll().registerCallback(Events.VIDEO_NEW, callback);
     }
 
     public void onVideoCommentDelete(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("video_comment_delete", callback);
+        this.longPoll().registerCallback(Events.VIDEO_COMMENT_DELETE, callback);
     }
 
     public void onWallPostNew(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("wall_post_new", callback);
+        this.longPoll().registerCallback(Events.WALL_POST_NEW, callback);
     }
 
     public void onWallReplyDelete(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("wall_reply_delete", callback);
+        this.longPoll().registerCallback(Events.WALL_REPLY_DELETE, callback);
     }
 
     public void onWallReplyEdit(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("wall_reply_edit", callback);
+        this.longPoll().registerCallback(Events.WALL_REPLY_EDIT, callback);
     }
 
     public void onWallReplyNew(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("wall_reply_new", callback);
+        this.longPoll().registerCallback(Events.WALL_REPLY_NEW, callback);
     }
 
     public void onWallReplyRestore(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("wall_reply_restore", callback);
+        this.longPoll().registerCallback(Events.WALL_REPLY_RESTORE, callback);
     }
 
     public void onWallRepost(Callback<JSONObject> callback) {
-        this.longPoll().registerCallback("wall_repost", callback);
+        this.longPoll().registerCallback(Events.WALL_REPOST, callback);
     }
 }
\ No newline at end of file
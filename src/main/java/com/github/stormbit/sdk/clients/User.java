@@ -23,4 +23,17 @@ public class User extends Client {
     public User(String login, String password, Auth.Listener listener) {
         super(login, password, listener);
     }
+
+    /**
+     * @param login    Login of your VK bot
+     * @param password Password of your VK bot
+     * @param runtime  Thread pools, can be shared with other clients
+     */
+    public User(String login, String password, ClientRuntime runtime) {
+        super(login, password, runtime);
+    }
+
+    public User(String login, String password, Auth.Listener listener, ClientRuntime runtime) {
+        super(login, password, listener, runtime);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,102 @@
+package com.github.stormbit.sdk.exceptions;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Error returned by VK API
+ * <p>
+ * See more: <a href="https://vk.com/dev/errors">link</a>
+ */
+public class VkApiException extends Exception {
+
+    /**
+     * Code of errors that were not returned by VK and are not of other classes
+     */
+    public static final int UNKNOWN = -1;
+
+    /**
+     * Request was not sent or response was not received: timeout, connection error
+     */
+    public static final int NETWORK = -2;
+
+    /**
+     * Response is not JSON or has no expected fields
+     */
+    public static final int BAD_RESPONSE = -3;
+
+    /**
+     * Codes of VK errors
+     */
+    public static final int AUTHORIZATION_FAILED = 5;
+    public static final int TOO_MANY_REQUESTS = 6;
+    public static final int FLOOD_CONTROL = 9;
+    public static final int INTERNAL_ERROR = 10;
+    public static final int RATE_LIMIT_REACHED = 29;
+
+    private final int code;
+    private final String method;
+
+    public VkApiException(int code, String message, String method) {
+        super(message);
+        this.code = code;
+        this.method = method;
+    }
+
+    /**
+     * @param error  VK error object: 'error' of response, or item of 'execute_errors'
+     * @param method Method name
+     */
+    public VkApiException(JSONObject error, String method) {
+        this(error.optInt("error_code", UNKNOWN), error.optString("error_msg", error.toString()), error.optString("method", method));
+    }
+
+    /**
+     * @param e      Exception of request or of parsing of response
+     * @param method Method name
+     * @return error of class of exception: network, bad response or unknown
+     */
+    public static VkApiException from(Throwable e, String method) {
+        if (e instanceof VkApiException) {
+            return (VkApiException) e;
+        }
+
+        int code = e instanceof IOException || e instanceof UncheckedIOException ? NETWORK
+                : e instanceof JSONException ? BAD_RESPONSE
+                : UNKNOWN;
+
+        VkApiException error = new VkApiException(code, e.toString(), method);
+        error.initCause(e);
+        return error;
+    }
+
+    /**
+     * @return error in format of VK: {error_code, error_msg, method}
+     */
+    public JSONObject toJSON() {
+        return new JSONObject()
+                .put("error_code", code)
+                .put("error_msg", String.valueOf(getMessage()))
+                .put("method", String.valueOf(method));
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public String toString() {
+        return "VkApiException{" +
+                "code=" + code +
+                ", method='" + method + '\'' +
+                ", message='" + getMessage() + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.stormbit.sdk.longpoll;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Callbacks of client, that are not bound to one event of longpoll server
+ * <p>
+ * Callbacks of group events are registered by {@link Events},
+ * callbacks of kinds of messages by {@link com.github.stormbit.sdk.objects.MessageType}
+ */
+public enum CallbackType {
+    EVERY_LONGPOLL_EVENT("OnEveryLongPollEventCallback"),
+
+    MESSAGE("OnMessageCallback"),
+    CHAT_MESSAGE("OnChatMessageCallback"),
+    EVERY_MESSAGE("OnEveryMessageCallback"),
+    MESSAGE_WITH_FWDS("OnMessageWithFwdsCallback"),
+    TYPING("OnTypingCallback"),
+
+    FRIEND_ONLINE("OnFriendOnlineCallback"),
+    FRIEND_OFFLINE("OnFriendOfflineCallback"),
+
+    CHAT_JOIN("OnChatJoinCallback"),
+    CHAT_LEAVE("OnChatLeaveCallback"),
+    CHAT_TITLE_CHANGED("OnChatTitleChangedCallback"),
+    CHAT_PHOTO_CHANGED("onChatPhotoChangedCallback"),
+    CHAT_PHOTO_REMOVED("onChatPhotoRemovedCallback"),
+    CHAT_CREATED("onChatCreatedCallback");
+
+    private final String name;
+    private static final Map<String, CallbackType> values = new HashMap<>();
+
+    static {
+        for (CallbackType type : CallbackType.values()) {
+            values.put(type.name, type);
+        }
+    }
+
+    CallbackType(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return name that was used for registering of callback: OnMessageCallback, ...
+     */
+    public String getName() {
+        return name;
+    }
+
+    public static CallbackType get(String name) {
+        return values.get(name);
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.stormbit.sdk.longpoll;
+
+import org.json.JSONObject;
+
+/**
+ * Position in stream of longpoll events: ts, and pts for user longpoll
+ * <p>
+ * More: <a href="https://vk.com/dev/using_longpoll">link</a>
+ */
+@SuppressWarnings("unused")
+public final class Cursor {
+
+    private final Integer ts;
+    private final Integer pts;
+
+    public Cursor(Integer ts, Integer pts) {
+        this.ts = ts;
+        this.pts = pts;
+    }
+
+    public Integer getTs() {
+        return ts;
+    }
+
+    /**
+     * @return pts, or null for group longpoll
+     */
+    public Integer getPts() {
+        return pts;
+    }
+
+    public JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+
+        if (ts != null) json.put("ts", ts);
+        if (pts != null) json.put("pts", pts);
+
+        return json;
+    }
+
+    /**
+     * @param json {ts, pts}
+     * @return cursor, or null if there is no ts
+     */
+    public static Cursor fromJSON(JSONObject json) {
+        if (!json.has("ts")) {
+            return null;
+        }
+
+        return new Cursor(json.getInt("ts"), json.has("pts") ? json.getInt("pts") : null);
+    }
+
+    @Override
+    public String toString() {
+        return toJSON().toString();
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.stormbit.sdk.longpoll;
+
+/**
+ * Storage of last handled position of longpoll,
+ * so after restart listening continues from it and no events are lost
+ */
+public interface CursorStore {
+
+    /**
+     * @return saved cursor, or null if there is no saved cursor
+     */
+    Cursor load();
+
+    /**
+     * Called every time when all updates of longpoll response are handled.
+     * Store may keep cursor in memory and write it later.
+     *
+     * @param cursor position after handled updates
+     */
+    void save(Cursor cursor);
+
+    /**
+     * Write saved cursor if it is not written yet.
+     * Called when longpoll is stopped.
+     */
+    default void flush() {
+    }
+}
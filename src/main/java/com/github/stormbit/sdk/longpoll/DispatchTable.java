@@ -0,0 +1,98 @@
+package com.github.stormbit.sdk.longpoll;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Listeners of events indexed by ordinal of enum
+ * <p>
+ * Every event can have several listeners. Array of listeners is copied on registering,
+ * so dispatching of event is only reading of one array without locks and hashing.
+ *
+ * @param <K> Enum of events
+ */
+final class DispatchTable<K extends Enum<K>> {
+
+    private static final Object[] EMPTY = new Object[0];
+
+    private final AtomicReferenceArray<Object[]> listeners;
+    private final AtomicInteger count = new AtomicInteger();
+
+    DispatchTable(Class<K> type) {
+        this.listeners = new AtomicReferenceArray<>(type.getEnumConstants().length);
+
+        for (int i = 0; i < listeners.length(); i++) {
+            listeners.set(i, EMPTY);
+        }
+    }
+
+    /**
+     * Add listener of event
+     *
+     * @param key      Event
+     * @param listener Listener
+     */
+    void add(K key, Object listener) {
+        int index = key.ordinal();
+
+        while (true) {
+            Object[] current = listeners.get(index);
+            Object[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = listener;
+
+            if (listeners.compareAndSet(index, current, updated)) {
+                count.incrementAndGet();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Remove listener of event
+     *
+     * @param key      Event
+     * @param listener Listener
+     * @return true if listener was registered
+     */
+    boolean remove(K key, Object listener) {
+        int index = key.ordinal();
+
+        while (true) {
+            Object[] current = listeners.get(index);
+            int position = Arrays.asList(current).indexOf(listener);
+
+            if (position < 0) {
+                return false;
+            }
+
+            Object[] updated = new Object[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, position);
+            System.arraycopy(current, position + 1, updated, position, updated.length - position);
+
+            if (listeners.compareAndSet(index, current, updated)) {
+                count.decrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param key Event
+     * @return listeners of event, must not be modified
+     */
+    Object[] get(K key) {
+        return listeners.get(key.ordinal());
+    }
+
+    boolean has(K key) {
+        return listeners.get(key.ordinal()).length > 0;
+    }
+
+    /**
+     * @return count of listeners of all events
+     */
+    int size() {
+        return count.get();
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.stormbit.sdk.longpoll;
+
+import com.github.stormbit.sdk.utils.Utils;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Store of longpoll cursor in file
+ * <p>
+ * Cursor is written to temporary file, synced to disk and renamed to target file,
+ * so file always contains whole cursor, even if process is killed while writing.
+ * Cursors are written not more often than once per interval, last one is written on flush.
+ */
+@SuppressWarnings("unused")
+public class FileCursorStore implements CursorStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileCursorStore.class);
+
+    private final Path file;
+    private final long intervalMillis;
+
+    private Cursor pending = null;
+    private long lastWrite = 0;
+
+    /**
+     * @param file file with cursor, cursor is written at most once per second
+     */
+    public FileCursorStore(Path file) {
+        this(file, 1000);
+    }
+
+    /**
+     * @param file           file with cursor
+     * @param intervalMillis min interval between writes, 0 to write every cursor
+     */
+    public FileCursorStore(Path file, long intervalMillis) {
+        this.file = file.toAbsolutePath();
+        this.intervalMillis = intervalMillis;
+    }
+
+    @Override
+    public synchronized Cursor load() {
+        if (pending != null) {
+            return pending;
+        }
+
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        try {
+            return Cursor.fromJSON(new JSONObject(new String(Files.readAllBytes(file), StandardCharsets.UTF_8)));
+        } catch (IOException | JSONException e) {
+            LOG.error("Can't read longpoll cursor from {}: {}", file, e.toString());
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized void save(Cursor cursor) {
+        pending = cursor;
+
+        if (System.currentTimeMillis() - lastWrite >= intervalMillis) {
+            flush();
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (pending == null) {
+            return;
+        }
+
+        try {
+            Utils.writeAtomically(file, pending.toString().getBytes(StandardCharsets.UTF_8));
+
+            pending = null;
+            lastWrite = System.currentTimeMillis();
+        } catch (IOException e) {
+            LOG.error("Can't write longpoll cursor to {}: {}", file, e.toString());
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+}
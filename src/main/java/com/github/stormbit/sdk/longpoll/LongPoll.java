@@ -3,16 +3,22 @@ package com.github.stormbit.sdk.longpoll;
 import com.github.stormbit.sdk.callbacks.AbstractCallback;
 import com.github.stormbit.sdk.callbacks.Callback;
 import com.github.stormbit.sdk.clients.Client;
+import com.github.stormbit.sdk.longpoll.events.Event;
+import com.github.stormbit.sdk.longpoll.events.EventType;
 import com.github.stormbit.sdk.longpoll.responses.GetLongPollServerResponse;
+import com.github.stormbit.sdk.longpoll.responses.LongPollResponse;
+import com.github.stormbit.sdk.objects.Chat;
+import com.github.stormbit.sdk.objects.MessageType;
 import com.github.stormbit.sdk.utils.Utils;
-import net.dongliu.requests.Header;
-import net.dongliu.requests.Requests;
-import net.dongliu.requests.exception.RequestsException;
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -28,6 +34,11 @@ public class LongPoll {
 
     private static final Logger LOG = LoggerFactory.getLogger(LongPoll.class);
 
+    /**
+     * Count of attempts to get longpoll server before listening is stopped
+     */
+    public static final int MAX_SETUP_ATTEMPTS = 5;
+
     private String server = null;
     private String key = null;
     private Integer ts = null;
@@ -47,9 +58,27 @@ public class LongPoll {
 
     private volatile boolean longpollIsOn = false;
 
+    /**
+     * ts of the last request and count of its updates that are already handled,
+     * so they are skipped when request with the same ts is retried
+     */
+    private Integer dispatchedTs = null;
+    private int dispatchedCount = 0;
+
+    /**
+     * Id of the last message handled from history of user longpoll.
+     * Longpoll continues from ts that was got before history, so new messages up to it are not handled again.
+     */
+    private volatile int historyMessageId = 0;
+
     private final UpdatesHandler updatesHandler;
     private final Client client;
 
+    /**
+     * Store of last handled ts and pts, or null
+     */
+    private final CursorStore cursorStore;
+
     /**
      * If true, all updates from longpoll server
      * will be logged to level 'INFO'
@@ -57,40 +86,38 @@ public class LongPoll {
     private volatile boolean logUpdates = false;
 
     /**
-     * Simple default constructor that requires only access token
+     * Simple default constructor that requires only access token, listening is started at once
      *
      * @param client client with your access token key, more: <a href="https://vk.com/dev/access_token">link</a>
      */
     public LongPoll(Client client) {
-        if (client.token == null) {
-            this.updatesHandler = new UpdatesHandlerUser(client);
-        } else {
-            this.updatesHandler = new UpdatesHandlerGroup(client);
-        }
-        this.updatesHandler.start();
-        this.client = client;
-
-        boolean dataSetted = setData(null, null, null, null, null);
+        this(client, null, null, null, null, null, null);
+    }
 
-        while (!dataSetted) {
-            LOG.error("Some error occurred when trying to get longpoll settings, aborting. Trying again in 1 sec.");
-            try {
-                Thread.sleep(1000);
-            } catch (InterruptedException ignored) {
-            }
-            dataSetted = setData(null, null, null, null, null);
-        }
+    /**
+     * Constructor that continues listening from saved cursor.
+     * Listening is not started: call {@link #start()} when callbacks are registered.
+     *
+     * @param client      client with your access token key, more: <a href="https://vk.com/dev/access_token">link</a>
+     * @param cursorStore store of last handled ts and pts, for example {@link FileCursorStore}
+     */
+    public LongPoll(Client client, CursorStore cursorStore) {
+        this(client, cursorStore, null, null, null, null, null);
+    }
 
-        if (!longpollIsOn) {
-            longpollIsOn = true;
-            Thread threadLongpollListener = new Thread(this::startListening);
-            threadLongpollListener.setName("threadLongpollListener");
-            threadLongpollListener.start();
-        }
+    /**
+     * Constructor of longpoll that is started only by {@link #start()},
+     * for example group that receives events only from Callback API does not start it at all.
+     *
+     * @param client client with your access token key, more: <a href="https://vk.com/dev/access_token">link</a>
+     * @param start  true to start listening at once
+     */
+    public LongPoll(Client client, boolean start) {
+        this(client, null, null, null, null, null, null, start);
     }
 
     /**
-     * Custom constructor
+     * Custom constructor, listening is started at once
      * @param client   client with your access token key, more: <a href="https://vk.com/dev/access_token">link</a>
      * @param need_pts more: <a href="https://vk.com/dev/using_longpoll">link</a>
      * @param version  more: <a href="https://vk.com/dev/using_longpoll">link</a>
@@ -99,32 +126,99 @@ public class LongPoll {
      * @param mode     more: <a href="https://vk.com/dev/using_longpoll">link</a>
      */
     public LongPoll(Client client, Integer need_pts, Integer version, Double API, Integer wait, Integer mode) {
+        this(client, null, need_pts, version, API, wait, mode);
+    }
+
+    /**
+     * Custom constructor.
+     * Longpoll with cursor store is not started: call {@link #start()} when callbacks are registered,
+     * longpoll without it is started at once.
+     * @param client      client with your access token key, more: <a href="https://vk.com/dev/access_token">link</a>
+     * @param cursorStore store of last handled ts and pts, or null
+     * @param need_pts    more: <a href="https://vk.com/dev/using_longpoll">link</a>
+     * @param version     more: <a href="https://vk.com/dev/using_longpoll">link</a>
+     * @param API         more: <a href="https://vk.com/dev/using_longpoll">link</a>
+     * @param wait        more: <a href="https://vk.com/dev/using_longpoll">link</a>
+     * @param mode        more: <a href="https://vk.com/dev/using_longpoll">link</a>
+     */
+    public LongPoll(Client client, CursorStore cursorStore, Integer need_pts, Integer version, Double API, Integer wait, Integer mode) {
+        this(client, cursorStore, need_pts, version, API, wait, mode, cursorStore == null);
+    }
+
+    private LongPoll(Client client, CursorStore cursorStore, Integer need_pts, Integer version, Double API, Integer wait, Integer mode, boolean start) {
 
         if (client.token == null) {
             this.updatesHandler = new UpdatesHandlerUser(client);
         } else {
             this.updatesHandler = new UpdatesHandlerGroup(client);
         }
-        this.updatesHandler.start();
         this.client = client;
+        this.cursorStore = cursorStore;
+
+        this.need_pts = need_pts == null ? this.need_pts : need_pts;
+        this.version = version == null ? this.version : version;
+        this.API = API == null ? this.API : API;
+        this.wait = wait == null ? this.wait : wait;
+        this.mode = mode == null ? this.mode : mode;
 
-        boolean dataSetted = setData(need_pts, version, API, wait, mode);
+        if (start) {
+            start();
+        }
+    }
 
-        while (!dataSetted) {
-            LOG.error("Some error occured when trying to get longpoll settings, aborting. Trying again in 1 sec.");
+    /**
+     * Start listening to longpoll server.
+     * <p>
+     * Longpoll without cursor store is started by constructor, unless it is created with start = false.
+     * Longpoll with cursor store must be started when all callbacks are registered:
+     * updates from saved cursor are handled only by callbacks that exist at that moment.
+     * <p>
+     * Longpoll server is got in listening thread, if it can not be got
+     * in {@link #MAX_SETUP_ATTEMPTS} attempts, listening is stopped.
+     */
+    public synchronized void start() {
+        if (longpollIsOn) {
+            return;
+        }
+
+        longpollIsOn = true;
+        Thread threadLongpollListener = client.runtime().newThread(() -> {
+            if (!connect()) {
+                longpollIsOn = false;
+                return;
+            }
+
+            resume();
+            startListening();
+        }, "longpoll");
+        threadLongpollListener.start();
+    }
+
+    /**
+     * Get longpoll server, key and ts
+     *
+     * @return false if longpoll server was not got, for example longpoll is disabled in group settings
+     */
+    private boolean connect() {
+        for (int attempt = 1; longpollIsOn; attempt++) {
+            if (setData(null, null, null, null, null)) {
+                return true;
+            }
+
+            if (attempt == MAX_SETUP_ATTEMPTS) {
+                LOG.error("Longpoll settings were not got in {} attempts, listening is stopped. Check that longpoll is enabled.", attempt);
+                return false;
+            }
+
+            LOG.error("Some error occurred when trying to get longpoll settings. Trying again in 1 sec.");
             try {
                 Thread.sleep(1000);
             } catch (InterruptedException ignored) {
+                return false;
             }
-            dataSetted = setData(need_pts, version, API, wait, mode);
         }
 
-        if (!longpollIsOn) {
-            longpollIsOn = true;
-            Thread threadLongpollListener = new Thread(this::startListening);
-            threadLongpollListener.setName("threadLongpollListener");
-            threadLongpollListener.start();
-        }
+        return false;
     }
 
     /**
@@ -133,12 +227,28 @@ public class LongPoll {
      */
     public void off() {
         longpollIsOn = false;
+
+        if (cursorStore != null) {
+            cursorStore.flush();
+
+            // Cursors of updates that are still in queue
+            this.updatesHandler.enqueue((Runnable) cursorStore::flush);
+        }
+    }
+
+    /**
+     * Handle updates received not from longpoll server, for example from Callback API
+     *
+     * @param updates Updates in the same format as 'updates' of longpoll response
+     */
+    public void handleUpdates(JSONArray updates) {
+        this.updatesHandler.handle(updates);
     }
 
     /**
-     * Add callback to the map
+     * Add callback of event
      *
-     * @param name     Callback name
+     * @param name     Callback name: name of event of group longpoll, OnMessageCallback, ...
      * @param callback Callback
      */
     public void registerCallback(String name, Callback callback) {
@@ -146,23 +256,74 @@ public class LongPoll {
     }
 
     /**
-     * Add callback to the map
+     * Add callback of event
      *
-     * @param name     Callback name
+     * @param name     Callback name: OnFriendOnlineCallback, ...
      * @param callback Callback
      */
     public void registerAbstractCallback(String name, AbstractCallback callback) {
-        updatesHandler.registerAbstractCallback(name, callback);
+        updatesHandler.registerCallback(name, callback);
     }
 
     /**
-     * Add callback to the map
+     * Add callback of event
      *
-     * @param name     Callback name
+     * @param name     Callback name: OnChatJoinCallback, ...
      * @param callback Callback
      */
     public void registerChatCallback(String name, AbstractCallback callback) {
-        updatesHandler.registerChatCallback(name, callback);
+        updatesHandler.registerCallback(name, callback);
+    }
+
+    /**
+     * Add callback of event of group longpoll
+     *
+     * @param event    Event
+     * @param callback Callback
+     */
+    public void registerCallback(Events event, Callback<?> callback) {
+        updatesHandler.registerCallback(event, callback);
+    }
+
+    /**
+     * Add callback of typed event of group longpoll
+     *
+     * @param type     Typed key of event
+     * @param callback Callback
+     * @param <T>      Class of event
+     */
+    public <T extends Event> void registerCallback(EventType<T> type, Callback<T> callback) {
+        updatesHandler.registerCallback(type, callback);
+    }
+
+    /**
+     * Add callback of kind of message
+     *
+     * @param type     Kind of message
+     * @param callback Callback
+     */
+    public void registerCallback(MessageType type, Callback<?> callback) {
+        updatesHandler.registerCallback(type, callback);
+    }
+
+    /**
+     * Add callback of event with one object
+     *
+     * @param type     Type of callback
+     * @param callback Callback
+     */
+    public void registerCallback(CallbackType type, Callback<?> callback) {
+        updatesHandler.registerCallback(type, callback);
+    }
+
+    /**
+     * Add callback of event with several objects
+     *
+     * @param type     Type of callback
+     * @param callback Callback
+     */
+    public void registerCallback(CallbackType type, AbstractCallback callback) {
+        updatesHandler.registerCallback(type, callback);
     }
 
     /**
@@ -298,29 +459,42 @@ public class LongPoll {
 
         while (longpollIsOn) {
 
-            JSONObject response;
-            String responseString = "{}";
+            LongPollResponse response;
 
-            try {
-                Map<String, Object> values = new HashMap<>();
-                values.put("act", "a_check");
-                values.put("key", key);
-                values.put("ts", ts);
-                values.put("wait", wait);
+            String url = server + "?act=a_check&key=" + key + "&ts=" + ts + "&wait=" + wait + "&mode=" + mode + "&version=" + version + "&msgs_limit=100000";
 
-                String url = server + "?act=a_check&key=" + key + "&ts=" + ts + "&wait=" + wait + "&mode=" + mode + "&version=" + version + "&msgs_limit=100000";
+            // Updates are not handled if nobody waits for them
+            boolean handleUpdates = this.updatesHandler.callbacksCount() > 0 || this.updatesHandler.commandsCount() > 0;
 
-                try {
-                    responseString = Requests.get(url)
-                            .timeout(30000)
-                            .headers(new Header("Accept-Charset", "utf-8"))
-                            .send().readToText();
-                } catch (RequestsException ignored) { continue; }
+            // Updates of retried request with the same ts were partly handled before
+            if (!ts.equals(dispatchedTs)) {
+                dispatchedTs = ts;
+                dispatchedCount = 0;
+            }
 
-                response = new JSONObject(responseString);
+            int[] read = {0};
 
-            } catch (JSONException ignored) {
-                LOG.error("Some error occurred, no updates got from longpoll server: {}", responseString);
+            try (Reader body = client.transport().get(url, 30000)) {
+
+                response = LongPollParser.parse(body, update -> {
+                    if (read[0]++ < dispatchedCount) {
+                        return;
+                    }
+                    dispatchedCount++;
+
+                    if (logUpdates) {
+                        LOG.info("Update from longpoll server: \n{}\n", update);
+                    }
+
+                    if (handleUpdates && longpollIsOn && !isHandledFromHistory(update)) {
+                        this.updatesHandler.enqueue(update);
+                    }
+                });
+
+            } catch (IOException | UncheckedIOException ignored) {
+                continue;
+            } catch (JSONException e) {
+                LOG.error("Some error occurred, no updates got from longpoll server: {}", e.getMessage());
                 try {
                     Thread.sleep(1000);
                 } catch (InterruptedException ignored1) { }
@@ -328,51 +502,216 @@ public class LongPoll {
                 continue;
             }
 
+            // Listening was stopped while waiting for response
+            if (!longpollIsOn) {
+                break;
+            }
+
             if (logUpdates) {
                 LOG.info("Response of getting updates: \n{}\n", response);
             }
 
-            if (response.has("failed")) {
+            if (response.getFailed() != null) {
 
-                int code = response.getInt("failed");
+                int code = response.getFailed();
 
                 LOG.error("Response of VK LongPoll fallen with error code {}", code);
 
-                if (code == 4) {
-                    version = response.getInt("max_version");
-                } else {
-                    if (response.has("ts")) {
-                        ts = response.getInt("ts");
+                Integer lastTs = ts,
+                        lastPts = pts;
+
+                switch (code) {
+
+                    // Part of events is lost, listening continues from new ts
+                    case 1: {
+                        ts = response.getTs();
+                        break;
                     }
 
+                    // Key is expired, ts is still valid
+                    case 2: {
+                        setData(null, null, null, null, null);
+                        ts = lastTs;
+                        break;
+                    }
+
+                    case 4: {
+                        version = response.getMaxVersion();
+                        setData(null, null, null, null, null);
+                        break;
+                    }
+
+                    default: {
+                        setData(null, null, null, null, null);
+                    }
+                }
+
+                // Lost messages of user longpoll are got by pts
+                if ((code == 1 || code == 3) && client.token == null && lastPts != null) {
+                    loadHistory(lastTs, lastPts);
                 }
-                setData(null, null, null, null, null);
             } else {
 
-                if (response.has("ts"))
-                    ts = response.getInt("ts");
+                if (response.getTs() != null)
+                    ts = response.getTs();
+
+                if (response.getPts() != null)
+                    this.pts = response.getPts();
+
+                checkpoint();
+
+                if (handleUpdates && (response.getTs() == null || !response.hasUpdates())) {
+                    LOG.error("Bad response from VK LongPoll server: no `ts` or `updates` array: {}", response);
+                    try {
+                        Thread.sleep(1000);
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Continue from saved cursor: group longpoll uses saved ts,
+     * user longpoll gets missed messages by saved pts
+     */
+    private void resume() {
+        if (cursorStore == null) {
+            return;
+        }
 
-                if (response.has("pts"))
-                    this.pts = response.getInt("pts");
+        Cursor cursor = cursorStore.load();
 
-                if (this.updatesHandler.callbacksCount() > 0 || this.updatesHandler.commandsCount() > 0 || this.updatesHandler.chatCallbacksCount() > 0) {
+        if (cursor == null) {
+            return;
+        }
 
-                    if (response.has("ts") && response.has("updates")) {
+        LOG.info("Continue listening from saved cursor {}", cursor);
 
-                        this.updatesHandler.handle(response.getJSONArray("updates"));
+        if (client.token != null) {
+            this.ts = cursor.getTs();
+        } else if (cursor.getPts() != null) {
+            loadHistory(cursor.getTs(), cursor.getPts());
+        }
+    }
 
-                    } else {
-                        LOG.error("Bad response from VK LongPoll server: no `ts` or `updates` array: {}", response);
-                        try {
-                            Thread.sleep(1000);
-                        } catch (InterruptedException ignored) {
-                        }
-                    }
+    /**
+     * @param update Update of longpoll
+     * @return true if it is new message of user longpoll that was already handled from history
+     */
+    private boolean isHandledFromHistory(Object update) {
+        if (historyMessageId == 0 || !(update instanceof JSONArray)) {
+            return false;
+        }
+
+        JSONArray array = (JSONArray) update;
+
+        return array.optInt(0) == 4 && array.optInt(1) <= historyMessageId;
+    }
+
+    /**
+     * Save cursor when all updates received before are handled, including messages handled in other threads.
+     * Cursor is saved through queue even if there are no updates, so it is not overwritten by older one.
+     */
+    private void checkpoint() {
+        if (cursorStore == null) {
+            return;
+        }
+
+        Cursor cursor = new Cursor(ts, pts);
+
+        this.updatesHandler.enqueue((Runnable) () -> cursorStore.save(cursor));
+    }
+
+    /**
+     * Handle messages that were received since ts and pts.
+     * Messages of history that come again from longpoll are not handled twice.
+     * More: <a href="https://vk.com/dev/messages.getLongPollHistory">link</a>
+     *
+     * @param ts  ts of longpoll
+     * @param pts pts of longpoll
+     */
+    private void loadHistory(Integer ts, Integer pts) {
+        String method = "messages.getLongPollHistory";
+
+        if (!Utils._hashes.has(method)) {
+            Utils.get_hash(client.auth(), method);
+        }
+
+        boolean more = true;
+
+        while (more && pts != null) {
+            JSONObject result = client.api().callSync(method, "ts", ts, "pts", pts, "lp_version", version, "msgs_limit", 200, "events_limit", 1000, "onlines", 0);
+
+            if (!result.has("response")) {
+                LOG.error("Bad response of getting longpoll history: {}", result);
+                return;
+            }
+
+            JSONObject response = result.getJSONObject("response");
+            JSONObject messages = response.optJSONObject("messages");
+
+            JSONArray updates = new JSONArray();
+
+            if (messages != null) {
+                JSONArray items = messages.getJSONArray("items");
+
+                for (int i = 0; i < items.length(); i++) {
+                    updates.put(historyMessageToUpdate(items.getJSONObject(i)));
+                    historyMessageId = Math.max(historyMessageId, items.getJSONObject(i).getInt("id"));
                 }
             }
+
+            if (updates.length() > 0) {
+                this.updatesHandler.handle(updates);
+            }
+
+            pts = response.has("new_pts") ? response.getInt("new_pts") : null;
+            more = response.optInt("more") == 1;
+
+            if (pts != null) {
+                this.pts = pts;
+            }
         }
     }
 
+    /**
+     * Message from history in format of event 4 of user longpoll:
+     * [4, message_id, flags, peer_id, timestamp, text, {from, attach1_type, attach1, ...}, {}, random_id]
+     */
+    private static JSONArray historyMessageToUpdate(JSONObject message) {
+        JSONObject extra = new JSONObject();
+
+        if (message.getInt("peer_id") > Chat.CHAT_PREFIX) {
+            extra.put("from", String.valueOf(message.getInt("from_id")));
+        }
+
+        JSONArray attachments = message.optJSONArray("attachments");
+
+        for (int i = 0; attachments != null && i < attachments.length(); i++) {
+            JSONObject attachment = attachments.getJSONObject(i);
+            String type = attachment.getString("type");
+            JSONObject object = attachment.optJSONObject(type);
+
+            extra.put("attach" + (i + 1) + "_type", type);
+
+            if (object != null && object.has("owner_id") && object.has("id")) {
+                extra.put("attach" + (i + 1), object.get("owner_id") + "_" + object.get("id"));
+            }
+        }
+
+        return new JSONArray()
+                .put(4)
+                .put(message.getInt("id"))
+                .put(message.optInt("out") == 1 ? 2 : 0)
+                .put(message.getInt("peer_id"))
+                .put(message.getInt("date"))
+                .put(message.optString("text"))
+                .put(extra)
+                .put(new JSONObject())
+                .put(message.optInt("random_id"));
+    }
+
     /**
      * If the client need to start typing
      * after receiving message
@@ -0,0 +1,137 @@
+package com.github.stormbit.sdk.longpoll;
+
+import com.github.stormbit.sdk.callbacks.Callback;
+import com.github.stormbit.sdk.longpoll.responses.LongPollResponse;
+import org.json.JSONException;
+import org.json.JSONTokener;
+
+import java.io.Reader;
+
+/**
+ * Reader of longpoll server response
+ * <p>
+ * Response is read from the stream step by step,
+ * and every update is returned to callback as soon as it is read,
+ * so the text of the whole response is never kept in memory.
+ * Callback can get some updates of a response and then the reading fails.
+ */
+final class LongPollParser {
+
+    private LongPollParser() {
+    }
+
+    /**
+     * @param reader   Body of response
+     * @param onUpdate Callback for every update: JSONArray for user longpoll, JSONObject for group longpoll
+     * @return fields of response except updates
+     * @throws JSONException if response is not valid json object
+     */
+    static LongPollResponse parse(Reader reader, Callback<Object> onUpdate) throws JSONException {
+        JSONTokener tokener = new JSONTokener(reader);
+        LongPollResponse response = new LongPollResponse();
+
+        if (tokener.nextClean() != '{') {
+            throw tokener.syntaxError("Response must begin with '{'");
+        }
+
+        if (tokener.nextClean() == '}') {
+            return response;
+        }
+        tokener.back();
+
+        while (true) {
+            String key = tokener.nextValue().toString();
+
+            if (tokener.nextClean() != ':') {
+                throw tokener.syntaxError("Expected a ':' after a key");
+            }
+
+            switch (key) {
+                case "updates": {
+                    response.setUpdatesCount(parseUpdates(tokener, onUpdate));
+                    break;
+                }
+                case "ts": {
+                    response.setTs(toInt(tokener.nextValue()));
+                    break;
+                }
+                case "pts": {
+                    response.setPts(toInt(tokener.nextValue()));
+                    break;
+                }
+                case "failed": {
+                    response.setFailed(toInt(tokener.nextValue()));
+                    break;
+                }
+                case "max_version": {
+                    response.setMaxVersion(toInt(tokener.nextValue()));
+                    break;
+                }
+                default: {
+                    tokener.nextValue();
+                }
+            }
+
+            switch (tokener.nextClean()) {
+                case ',': {
+                    continue;
+                }
+                case '}': {
+                    return response;
+                }
+                default: {
+                    throw tokener.syntaxError("Expected a ',' or '}'");
+                }
+            }
+        }
+    }
+
+    /**
+     * @return count of updates
+     */
+    private static int parseUpdates(JSONTokener tokener, Callback<Object> onUpdate) throws JSONException {
+
+        if (tokener.nextClean() != '[') {
+            throw tokener.syntaxError("Updates must be an array");
+        }
+
+        if (tokener.nextClean() == ']') {
+            return 0;
+        }
+        tokener.back();
+
+        int count = 0;
+
+        while (true) {
+            onUpdate.onResult(tokener.nextValue());
+            count++;
+
+            switch (tokener.nextClean()) {
+                case ',': {
+                    continue;
+                }
+                case ']': {
+                    return count;
+                }
+                default: {
+                    throw tokener.syntaxError("Expected a ',' or ']'");
+                }
+            }
+        }
+    }
+
+    /**
+     * Numbers of group longpoll are strings
+     */
+    private static Integer toInt(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+
+        try {
+            return Integer.valueOf(value.toString());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -1,9 +1,9 @@
 package com.github.stormbit.sdk.longpoll;
 
 import org.json.JSONArray;
-import org.json.JSONObject;
 
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Queue of updates
@@ -11,10 +11,10 @@ import java.util.concurrent.CopyOnWriteArrayList;
 class Queue {
 
     /**
-     * List of updates that we need to handle
+     * List of updates that we need to handle:
+     * JSONArray for user longpoll, JSONObject for group longpoll
      */
-    protected volatile CopyOnWriteArrayList<JSONArray> updates = new CopyOnWriteArrayList<>();
-    protected volatile CopyOnWriteArrayList<JSONObject> updates2 = new CopyOnWriteArrayList<>();
+    private final ConcurrentLinkedQueue<Object> updates = new ConcurrentLinkedQueue<>();
 
     /**
      * We add all of updates from longpoll server
@@ -23,35 +23,49 @@ class Queue {
      * @param elements Array of updates
      */
     protected void putAll(JSONArray elements) {
-        elements.forEach(item -> {
-            if (item instanceof JSONArray) {
-                updates.add((JSONArray) item);
-            } else {
-                updates2.add((JSONObject) item);
-            }
-        });
+        for (int i = 0; i < elements.length(); i++) {
+            updates.offer(elements.get(i));
+        }
     }
 
     /**
-     * Analog method of 'shift()' method from javascript
+     * Add one update to queue
      *
-     * @return First element of list, and then remove it
+     * @param update Update
      */
-    protected JSONArray shift() {
-        if (this.updates.size() > 0) {
-            JSONArray answer = this.updates.get(0);
-            this.updates.remove(0);
-            return answer;
-        }
-        return new JSONArray();
+    protected void put(Object update) {
+        updates.offer(update);
+    }
+
+    /**
+     * Take the first update from queue
+     *
+     * @return update, or null if queue is empty
+     */
+    protected Object poll() {
+        return updates.poll();
     }
 
-    protected JSONObject shift2() {
-        if (this.updates2.size() > 0) {
-            JSONObject answer = this.updates2.get(0);
-            this.updates2.remove(0);
-            return answer;
+    /**
+     * Take up to max updates from queue
+     *
+     * @param elements Collection to put updates in
+     * @param max      Max count of updates to take
+     * @return count of taken updates
+     */
+    protected int drainTo(Collection<Object> elements, int max) {
+        int count = 0;
+        Object update;
+
+        while (count < max && (update = updates.poll()) != null) {
+            elements.add(update);
+            count++;
         }
-        return new JSONObject();
+
+        return count;
+    }
+
+    protected boolean isEmpty() {
+        return updates.isEmpty();
     }
 }
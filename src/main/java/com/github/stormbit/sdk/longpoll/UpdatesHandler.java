@@ -3,27 +3,64 @@ package com.github.stormbit.sdk.longpoll;
 import com.github.stormbit.sdk.callbacks.AbstractCallback;
 import com.github.stormbit.sdk.callbacks.Callback;
 import com.github.stormbit.sdk.clients.Client;
+import com.github.stormbit.sdk.longpoll.events.Event;
+import com.github.stormbit.sdk.longpoll.events.EventType;
+import com.github.stormbit.sdk.objects.Message;
+import com.github.stormbit.sdk.objects.MessageType;
 import org.json.JSONArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
-
-import static com.github.stormbit.sdk.clients.Client.scheduler;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Created by Storm-bit on 03/04/2020 19:40
  */
-public abstract class UpdatesHandler extends Thread {
-    protected volatile Queue queue = new Queue();
+public abstract class UpdatesHandler {
+
+    protected static final Logger LOG = LoggerFactory.getLogger(UpdatesHandler.class);
+
+    /**
+     * Count of updates taken from queue at once
+     */
+    private static final int BATCH_SIZE = 100;
+
+    protected final Queue queue = new Queue();
+
+    /**
+     * True while updates from queue are handling
+     */
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+
+    /**
+     * Messages that are handled in other threads now
+     */
+    private final Set<CompletableFuture<Void>> handlingMessages = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The last Runnable from queue, every Runnable is run after the previous one
+     */
+    private CompletableFuture<Void> lastMarker = CompletableFuture.completedFuture(null);
 
     protected volatile boolean sendTyping = false;
 
     /**
-     * Maps with callbacks
+     * Tables with callbacks: of group events, of kinds of messages and other callbacks of client
      */
-    protected ConcurrentHashMap<String, Callback> callbacks = new ConcurrentHashMap<>();
-    protected ConcurrentHashMap<String, AbstractCallback> chatCallbacks = new ConcurrentHashMap<>();
-    protected ConcurrentHashMap<String, AbstractCallback> abstractCallbacks = new ConcurrentHashMap<>();
+    protected final DispatchTable<Events> eventCallbacks = new DispatchTable<>(Events.class);
+    protected final DispatchTable<MessageType> messageCallbacks = new DispatchTable<>(MessageType.class);
+    protected final DispatchTable<CallbackType> callbacks = new DispatchTable<>(CallbackType.class);
+
+    /**
+     * Callbacks of typed events, event object is created only if there is any callback
+     */
+    protected final DispatchTable<Events> typedEventCallbacks = new DispatchTable<>(Events.class);
 
     /**
      * Client with access_token
@@ -36,64 +73,312 @@ public abstract class UpdatesHandler extends Thread {
 
     /**
      * Handle the array of updates
+     * <p>
+     * Updates are put to queue, and the whole queue is handled in other thread,
+     * so there are no threads waiting for updates while bot is idle.
      */
     void handle(JSONArray updates) {
         this.queue.putAll(updates);
+        startDraining();
+    }
+
+    /**
+     * Handle one update as soon as it is read from response
+     *
+     * @param update Event: JSONArray for user longpoll, JSONObject for group longpoll,
+     *               or Runnable that is run when all updates before it are handled,
+     *               including messages that are handled in other threads
+     */
+    void enqueue(Object update) {
+        this.queue.put(update);
+        startDraining();
+    }
+
+    /**
+     * Start handling of queue if it is not started yet.
+     * If pool of client is full, queue is handled in this thread, so reading of new updates waits for it.
+     */
+    private void startDraining() {
+        if (!queue.isEmpty() && draining.compareAndSet(false, true)) {
+            try {
+                client.runtime().service().execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                if (client.runtime().isShutdown()) {
+                    LOG.error("Runtime of client is stopped, updates in queue are not handled");
+                    draining.set(false);
+                    return;
+                }
+
+                drain();
+            }
+        }
+    }
+
+    /**
+     * Handle all updates from queue one by one, in order they were received
+     */
+    private void drain() {
+        List<Object> batch = new ArrayList<>(BATCH_SIZE);
+
+        while (queue.drainTo(batch, BATCH_SIZE) > 0) {
+            for (Object update : batch) {
+                try {
+                    if (update instanceof Runnable) {
+                        runAfterMessages((Runnable) update);
+                    } else {
+                        handleUpdate(update);
+                    }
+                } catch (Exception e) {
+                    LOG.error("Some error occurred when handling update {}: {}", update, e.toString());
+                }
+            }
+            batch.clear();
+        }
+
+        draining.set(false);
+        startDraining();
+    }
+
+    /**
+     * Run marker of queue when messages that are handling now are handled, and after previous markers
+     */
+    private void runAfterMessages(Runnable marker) {
+        List<CompletableFuture<Void>> waitFor = new ArrayList<>(handlingMessages);
+        waitFor.add(lastMarker);
+
+        lastMarker = CompletableFuture.allOf(waitFor.toArray(new CompletableFuture<?>[0])).thenRun(() -> {
+            try {
+                marker.run();
+            } catch (Exception e) {
+                LOG.error("Some error occurred when handling update {}: {}", marker, e.toString());
+            }
+        });
     }
 
-    @Override
-    public void run() {
-        scheduler.scheduleWithFixedDelay(this::handleCurrentUpdate, 0, 1, TimeUnit.MILLISECONDS);
+    /**
+     * Handle message in other thread, so other updates are not waiting for it.
+     * Runnables from queue wait until it is handled.
+     *
+     * @param handling Handling of message
+     */
+    protected void handleMessageAsync(Runnable handling) {
+        Runnable task = () -> {
+            try {
+                handling.run();
+            } catch (Exception e) {
+                LOG.error("Some error occurred when handling message: {}", e.toString());
+            }
+        };
+
+        CompletableFuture<Void> future;
+
+        try {
+            future = CompletableFuture.runAsync(task, client.runtime().service());
+        } catch (RejectedExecutionException e) {
+
+            // Pool of client is full, message is handled in this thread
+            task.run();
+            return;
+        }
+
+        handlingMessages.add(future);
+        future.whenComplete((result, error) -> handlingMessages.remove(future));
     }
 
     /**
      * Handle one event from longpoll server
+     *
+     * @param update Event: JSONArray for user longpoll, JSONObject for group longpoll
      */
-    protected abstract void handleCurrentUpdate();
+    protected abstract void handleUpdate(Object update);
 
     /**
-     * Add callback to the map
+     * Call all callbacks of event
+     *
+     * @param table Table with callbacks
+     * @param key   Event
+     * @param value Object of event
+     * @return true if event has any callback
+     */
+    @SuppressWarnings("unchecked")
+    protected <K extends Enum<K>> boolean dispatch(DispatchTable<K> table, K key, Object value) {
+        Object[] listeners = table.get(key);
+
+        for (Object listener : listeners) {
+            ((Callback<Object>) listener).onResult(value);
+        }
+
+        return listeners.length > 0;
+    }
+
+    /**
+     * Add callback by its old name: name of event of group longpoll, OnVoiceMessageCallback, OnMessageCallback, ...
      *
      * @param name     Callback name
      * @param callback Callback
      */
-    void registerCallback(String name, Callback<Object> callback) {
-        this.callbacks.put(name, callback);
+    void registerCallback(String name, Object callback) {
+        Events event = Events.get(name);
+
+        if (event != null) {
+            eventCallbacks.add(event, callback);
+            return;
+        }
+
+        for (MessageType type : MessageType.values()) {
+            String typeName = type.getType();
+
+            if (name.equals("On" + Character.toUpperCase(typeName.charAt(0)) + typeName.substring(1) + "Callback")) {
+                messageCallbacks.add(type, callback);
+                return;
+            }
+        }
+
+        CallbackType type = CallbackType.get(name);
+
+        if (type == null) {
+            LOG.error("Unknown callback name: {}", name);
+            return;
+        }
+
+        callbacks.add(type, callback);
+    }
+
+    void registerCallback(Events event, Callback<?> callback) {
+        this.eventCallbacks.add(event, callback);
+    }
+
+    void registerCallback(MessageType type, Callback<?> callback) {
+        this.messageCallbacks.add(type, callback);
+    }
+
+    void registerCallback(CallbackType type, Callback<?> callback) {
+        this.callbacks.add(type, callback);
     }
 
-    void registerAbstractCallback(String name, AbstractCallback callback) {
-        this.abstractCallbacks.put(name, callback);
+    <T extends Event> void registerCallback(EventType<T> type, Callback<T> callback) {
+        this.typedEventCallbacks.add(type.getEvent(), callback);
     }
 
-    void registerChatCallback(String name, AbstractCallback callback) {
-        this.chatCallbacks.put(name, callback);
+    /**
+     * @param type     Type of callback
+     * @param callback CallbackDouble, CallbackTriple, ... for events with several objects
+     */
+    void registerCallback(CallbackType type, AbstractCallback callback) {
+        this.callbacks.add(type, callback);
     }
 
     /**
-     * Returns count of callbacks
+     * Returns count of all callbacks
      */
     int callbacksCount() {
-        return this.callbacks.size();
+        return eventCallbacks.size() + typedEventCallbacks.size() + messageCallbacks.size() + callbacks.size();
     }
 
     /**
-     * Returns count of abstract callbacks
+     * Returns count of commands
      */
-    int abstractCallbacksCount() {
-        return this.abstractCallbacks.size();
+    int commandsCount() {
+        return this.client.commands().size();
     }
 
     /**
-     * Returns count of chat callbacks
+     * Handle new message: commands and callbacks of message.
+     * Typing is shown in its dialog before the first command or callback of message is called,
+     * and is kept while message is handled. Message without handlers gets no typing.
+     *
+     * @param message received message
      */
-    int chatCallbacksCount() {
-        return this.chatCallbacks.size();
+    protected void handleMessage(Message message) {
+
+        boolean typing = sendTyping;
+
+        if (typing) {
+            client.typing().begin(typingPeer(message));
+        }
+
+        try {
+            dispatchMessage(message);
+        } finally {
+            if (typing) {
+                client.typing().end(typingPeer(message));
+            }
+        }
+    }
+
+    private void dispatchMessage(Message message) {
+
+        // Flag
+        boolean messageIsAlreadyHandled = false;
+
+        // check for commands
+        if (this.client.commands().size() > 0) {
+            messageIsAlreadyHandled = handleCommands(message);
+        }
+
+        if (message.hasFwds() && dispatchWithTyping(callbacks, CallbackType.MESSAGE_WITH_FWDS, message)) {
+            messageIsAlreadyHandled = true;
+        }
+
+        // kind of message is found only if somebody waits for it
+        if (!messageIsAlreadyHandled && messageCallbacks.size() > 0 && dispatchWithTyping(messageCallbacks, message.messageType(), message)) {
+            messageIsAlreadyHandled = true;
+        }
+
+        if (!messageIsAlreadyHandled) {
+            dispatchWithTyping(callbacks, CallbackType.MESSAGE, message);
+        }
+
+        if (!messageIsAlreadyHandled) {
+            dispatch(callbacks, CallbackType.CHAT_MESSAGE, message);
+        }
+
+        dispatchWithTyping(callbacks, CallbackType.EVERY_MESSAGE, message);
     }
 
     /**
-     * Returns count of commands
+     * Send typing if message has callbacks of this kind, and call them
+     *
+     * @return true if message has any callback of this kind
      */
-    int commandsCount() {
-        return this.client.commands.size();
+    private <K extends Enum<K>> boolean dispatchWithTyping(DispatchTable<K> table, K key, Message message) {
+        if (table.get(key).length > 0) {
+            handleSendTyping(message);
+        }
+
+        return dispatch(table, key, message);
+    }
+
+    /**
+     * Handle message and call back if it contains any command
+     *
+     * @param message received message
+     */
+    private boolean handleCommands(Message message) {
+
+        boolean is = false;
+
+        for (Client.Command command : this.client.commands().match(message.getText())) {
+            handleSendTyping(message);
+
+            command.getCallback().onResult(message);
+            is = true;
+        }
+
+        return is;
+    }
+
+    /**
+     * Send typing, not more often than once per few seconds for one dialog
+     */
+    protected void handleSendTyping(Message message) {
+
+        if (sendTyping) {
+            client.typing().typing(typingPeer(message));
+        }
+    }
+
+    private static int typingPeer(Message message) {
+        return message.isMessageFromChat() ? message.getChatIdLong() : message.authorId();
     }
 }
@@ -4,12 +4,12 @@ import com.github.stormbit.sdk.callbacks.CallbackDouble;
 import com.github.stormbit.sdk.callbacks.CallbackFourth;
 import com.github.stormbit.sdk.callbacks.CallbackTriple;
 import com.github.stormbit.sdk.clients.Client;
+import com.github.stormbit.sdk.longpoll.events.EventType;
 import com.github.stormbit.sdk.objects.Chat;
 import com.github.stormbit.sdk.objects.Message;
+import org.json.JSONArray;
 import org.json.JSONObject;
 
-import static com.github.stormbit.sdk.clients.Client.service;
-
 /**
  * Created by Storm-Bit on 28/09/2017 21:59
  * <p>
@@ -21,22 +21,28 @@ public class UpdatesHandlerGroup extends UpdatesHandler {
         super(client);
     }
 
-    protected void handleCurrentUpdate() {
-
-        JSONObject currentUpdate;
+    protected void handleUpdate(Object update) {
 
-        if (this.queue.updates2.isEmpty()) {
+        if (!(update instanceof JSONObject)) {
+            LOG.error("Bad update from longpoll server: {}", update);
             return;
-        } else {
-            currentUpdate = this.queue.shift2();
         }
 
+        JSONObject currentUpdate = (JSONObject) update;
+
         Events updateType = Events.get(currentUpdate.getString("type"));
 
+        if (updateType == null) {
+            handleEveryLongPollUpdate(currentUpdate);
+            return;
+        }
+
         JSONObject object = currentUpdate.getJSONObject("object");
 
-        if (callbacks.containsKey(updateType.getType())) {
-            callbacks.get(updateType.getType()).onResult(object);
+        dispatch(eventCallbacks, updateType, object);
+
+        if (typedEventCallbacks.has(updateType)) {
+            dispatch(typedEventCallbacks, updateType, EventType.of(updateType).create(currentUpdate));
         }
 
         switch (updateType) {
@@ -45,7 +51,7 @@ public class UpdatesHandlerGroup extends UpdatesHandler {
             case MESSAGE_NEW: {
 
                 // check if message is received
-                service.submit(() -> handleMessageUpdate(object));
+                handleMessageAsync(() -> handleMessageUpdate(object));
 
                 // handle every
                 handleEveryLongPollUpdate(object);
@@ -93,8 +99,8 @@ public class UpdatesHandlerGroup extends UpdatesHandler {
 
                     String title = attachments.getString("source_text");
 
-                    if (chatCallbacks.containsKey("onChatCreatedCallback")) {
-                        ((CallbackTriple<String, Integer, Integer>) chatCallbacks.get("onChatCreatedCallback")).onEvent(title, from, chatId);
+                    for (Object callback : callbacks.get(CallbackType.CHAT_CREATED)) {
+                        ((CallbackTriple<String, Integer, Integer>) callback).onEvent(title, from, chatId);
                     }
                     break;
                 }
@@ -103,8 +109,8 @@ public class UpdatesHandlerGroup extends UpdatesHandler {
                     String oldTitle = attachments.getString("source_old_text");
                     String newTitle = attachments.getString("source_text");
 
-                    if (chatCallbacks.containsKey("OnChatTitleChangedCallback")) {
-                        ((CallbackFourth<String, String, Integer, Integer>) chatCallbacks.get("OnChatTitleChangedCallback")).onEvent(oldTitle, newTitle, from, chatId);
+                    for (Object callback : callbacks.get(CallbackType.CHAT_TITLE_CHANGED)) {
+                        ((CallbackFourth<String, String, Integer, Integer>) callback).onEvent(oldTitle, newTitle, from, chatId);
                     }
                     break;
                 }
@@ -112,8 +118,8 @@ public class UpdatesHandlerGroup extends UpdatesHandler {
 
                     JSONObject photo = new JSONObject(client.api().callSync("messages.getById", "message_ids", updateObject.getInt("conversation_message_id")).getJSONObject("response").getJSONArray("items").getJSONObject(0).getJSONArray("attachments").getJSONObject(0).getJSONObject("photo"));
 
-                    if (chatCallbacks.containsKey("onChatPhotoChangedCallback")) {
-                        ((CallbackTriple<JSONObject, Integer, Integer>) chatCallbacks.get("onChatPhotoChangedCallback")).onEvent(photo, from, chatId);
+                    for (Object callback : callbacks.get(CallbackType.CHAT_PHOTO_CHANGED)) {
+                        ((CallbackTriple<JSONObject, Integer, Integer>) callback).onEvent(photo, from, chatId);
                     }
 
                     break;
@@ -122,8 +128,8 @@ public class UpdatesHandlerGroup extends UpdatesHandler {
 
                     Integer user = Integer.valueOf(attachments.getString("source_mid"));
 
-                    if (chatCallbacks.containsKey("OnChatJoinCallback")) {
-                        ((CallbackTriple<Integer, Integer, Integer>) chatCallbacks.get("OnChatJoinCallback")).onEvent(from, user, chatId);
+                    for (Object callback : callbacks.get(CallbackType.CHAT_JOIN)) {
+                        ((CallbackTriple<Integer, Integer, Integer>) callback).onEvent(from, user, chatId);
                     }
                     break;
                 }
@@ -131,15 +137,15 @@ public class UpdatesHandlerGroup extends UpdatesHandler {
 
                     Integer user = Integer.valueOf(attachments.getString("source_mid"));
 
-                    if (chatCallbacks.containsKey("OnChatLeaveCallback")) {
-                        ((CallbackTriple<Integer, Integer, Integer>) chatCallbacks.get("OnChatLeaveCallback")).onEvent(from, user, chatId);
+                    for (Object callback : callbacks.get(CallbackType.CHAT_LEAVE)) {
+                        ((CallbackTriple<Integer, Integer, Integer>) callback).onEvent(from, user, chatId);
                     }
                     break;
                 }
                 case "chat_photo_remove": {
 
-                    if (chatCallbacks.containsKey("onChatPhotoRemovedCallback")) {
-                        ((CallbackDouble<Integer, Integer>) chatCallbacks.get("onChatPhotoRemovedCallback")).onEvent(from, chatId);
+                    for (Object callback : callbacks.get(CallbackType.CHAT_PHOTO_REMOVED)) {
+                        ((CallbackDouble<Integer, Integer>) callback).onEvent(from, chatId);
                     }
                     break;
                 }
@@ -152,9 +158,7 @@ public class UpdatesHandlerGroup extends UpdatesHandler {
      */
     @SuppressWarnings("unchecked")
     private void handleEveryLongPollUpdate(JSONObject updateObject) {
-        if (callbacks.containsKey("OnEveryLongPollEventCallback")) {
-            callbacks.get("OnEveryLongPollEventCallback").onResult(updateObject);
-        }
+        dispatch(callbacks, CallbackType.EVERY_LONGPOLL_EVENT, updateObject);
     }
 
     /**
@@ -163,9 +167,6 @@ public class UpdatesHandlerGroup extends UpdatesHandler {
     @SuppressWarnings("unchecked")
     private void handleMessageUpdate(JSONObject updateObject) {
 
-        // Flag
-        boolean messageIsAlreadyHandled = false;
-
         // All necessary data
         int messageId = updateObject.getInt("id"),
                 peerId = updateObject.getInt("peer_id"),
@@ -176,16 +177,14 @@ public class UpdatesHandlerGroup extends UpdatesHandler {
 
         JSONObject payload = updateObject.has("payload") ? new JSONObject(updateObject.getString("payload")) : new JSONObject();
 
-        JSONObject attachments = updateObject.getJSONArray("attachments").length() > 0 ? updateObject.getJSONArray("attachments").getJSONObject(0) : null;
+        JSONArray attachments = updateObject.getJSONArray("attachments");
 
         Integer randomId = updateObject.getInt("random_id");
 
         // Check for chat
         if (peerId > Chat.CHAT_PREFIX) {
             chatId = peerId - Chat.CHAT_PREFIX;
-            if (attachments != null) {
-                peerId = Integer.parseInt(attachments.getString("from"));
-            }
+            peerId = updateObject.getInt("from_id");
             messageId = updateObject.getInt("conversation_message_id");
         }
 
@@ -208,140 +207,7 @@ public class UpdatesHandlerGroup extends UpdatesHandler {
             handleChatEvents(updateObject);
         }
 
-        // check for commands
-        if (this.client.commands.size() > 0) {
-            messageIsAlreadyHandled = handleCommands(message);
-        }
-
-        if (message.hasFwds()) {
-            if (callbacks.containsKey("OnMessageWithFwdsCallback")) {
-                callbacks.get("OnMessageWithFwdsCallback").onResult(message);
-                messageIsAlreadyHandled = true;
-
-                handleSendTyping(message);
-            }
-        }
-
-        if (!messageIsAlreadyHandled) {
-            switch (message.messageType()) {
-
-                case "voiceMessage": {
-                    if (callbacks.containsKey("OnVoiceMessageCallback")) {
-                        callbacks.get("OnVoiceMessageCallback").onResult(message);
-                        messageIsAlreadyHandled = true;
-
-                        handleSendTyping(message);
-                    }
-                    break;
-                }
-
-                case "stickerMessage": {
-                    if (callbacks.containsKey("OnStickerMessageCallback")) {
-                        callbacks.get("OnStickerMessageCallback").onResult(message);
-                        messageIsAlreadyHandled = true;
-
-                        handleSendTyping(message);
-                    }
-                    break;
-                }
-
-                case "gifMessage": {
-                    if (callbacks.containsKey("OnGifMessageCallback")) {
-                        callbacks.get("OnGifMessageCallback").onResult(message);
-                        messageIsAlreadyHandled = true;
-
-                        handleSendTyping(message);
-                    }
-                    break;
-                }
-
-                case "audioMessage": {
-                    if (callbacks.containsKey("OnAudioMessageCallback")) {
-                        callbacks.get("OnAudioMessageCallback").onResult(message);
-                        messageIsAlreadyHandled = true;
-
-                        handleSendTyping(message);
-                    }
-                    break;
-                }
-
-                case "videoMessage": {
-                    if (callbacks.containsKey("OnVideoMessageCallback")) {
-                        callbacks.get("OnVideoMessageCallback").onResult(message);
-                        messageIsAlreadyHandled = true;
-
-                        handleSendTyping(message);
-                    }
-                    break;
-                }
-
-                case "docMessage": {
-                    if (callbacks.containsKey("OnDocMessageCallback")) {
-                        callbacks.get("OnDocMessageCallback").onResult(message);
-                        messageIsAlreadyHandled = true;
-
-                        handleSendTyping(message);
-                    }
-                    break;
-                }
-
-                case "wallMessage": {
-                    if (callbacks.containsKey("OnWallMessageCallback")) {
-                        callbacks.get("OnWallMessageCallback").onResult(message);
-                        messageIsAlreadyHandled = true;
-
-                        handleSendTyping(message);
-                    }
-                    break;
-                }
-
-                case "photoMessage": {
-                    if (callbacks.containsKey("OnPhotoMessageCallback")) {
-                        callbacks.get("OnPhotoMessageCallback").onResult(message);
-                        messageIsAlreadyHandled = true;
-
-                        handleSendTyping(message);
-                    }
-                    break;
-                }
-
-                case "linkMessage": {
-                    if (callbacks.containsKey("OnLinkMessageCallback")) {
-                        callbacks.get("OnLinkMessageCallback").onResult(message);
-                        messageIsAlreadyHandled = true;
-
-                        handleSendTyping(message);
-                    }
-                    break;
-                }
-
-                case "simpleTextMessage": {
-                    if (callbacks.containsKey("OnSimpleTextMessageCallback")) {
-                        callbacks.get("OnSimpleTextMessageCallback").onResult(message);
-                        messageIsAlreadyHandled = true;
-
-                        handleSendTyping(message);
-                    }
-                    break;
-                }
-            }
-        }
-
-        if (callbacks.containsKey("OnMessageCallback") && !messageIsAlreadyHandled) {
-            callbacks.get("OnMessageCallback").onResult(message);
-
-            handleSendTyping(message);
-        }
-
-        if (callbacks.containsKey("OnChatMessageCallback") && !messageIsAlreadyHandled) {
-            callbacks.get("OnChatMessageCallback").onResult(message);
-        }
-
-        if (callbacks.containsKey("OnEveryMessageCallback")) {
-            callbacks.get("OnEveryMessageCallback").onResult(message);
-
-            handleSendTyping(message);
-        }
+        handleMessage(message);
     }
 
     /**
@@ -350,48 +216,6 @@ public class UpdatesHandlerGroup extends UpdatesHandler {
     @SuppressWarnings("unchecked")
     private void handleTypingUpdate(JSONObject updateObject) {
 
-        if (callbacks.containsKey("OnTypingCallback")) {
-            callbacks.get("OnTypingCallback").onResult(updateObject.getString("from_id"));
-        }
-    }
-
-    /**
-     * Handle message and call back if it contains any command
-     *
-     * @param message received message
-     */
-    private boolean handleCommands(Message message) {
-
-        boolean is = false;
-
-        for (Client.Command command : this.client.commands) {
-            for (int i = 0; i < command.getCommands().length; i++) {
-                if (message.getText().toLowerCase().contains(command.getCommands()[i].toString().toLowerCase())) {
-                    command.getCallback().onResult(message);
-                    is = true;
-
-                    handleSendTyping(message);
-                }
-            }
-        }
-
-        return is;
-    }
-
-    /**
-     * Send typing
-     */
-    private void handleSendTyping(Message message) {
-
-        // Send typing
-        if (sendTyping) {
-            if (!message.isMessageFromChat()) {
-                this.client.api().call("messages.setActivity", "{type:'typing',peer_id:" + message.authorId() + "}", response -> {
-                });
-            } else {
-                this.client.api().call("messages.setActivity", "{type:'typing',peer_id:" + message.getChatIdLong() + "}", response -> {
-                });
-            }
-        }
+        dispatch(callbacks, CallbackType.TYPING, updateObject.getString("from_id"));
     }
 }
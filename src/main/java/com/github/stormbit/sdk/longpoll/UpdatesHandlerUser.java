@@ -9,8 +9,6 @@ import com.github.stormbit.sdk.objects.Message;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import static com.github.stormbit.sdk.clients.Client.service;
-
 /**
  * Created by Storm-bit on 03/04/2020 19:40
  * <p>
@@ -26,16 +24,15 @@ public class UpdatesHandlerUser extends UpdatesHandler {
     }
 
     @Override
-    protected void handleCurrentUpdate() {
-
-        JSONArray currentUpdate;
+    protected void handleUpdate(Object update) {
 
-        if (this.queue.updates.isEmpty()) {
+        if (!(update instanceof JSONArray)) {
+            LOG.error("Bad update from longpoll server: {}", update);
             return;
-        } else {
-            currentUpdate = this.queue.shift();
         }
 
+        JSONArray currentUpdate = (JSONArray) update;
+
         int updateType = currentUpdate.getInt(0);
 
         switch (updateType) {
@@ -47,7 +44,7 @@ public class UpdatesHandlerUser extends UpdatesHandler {
 
                 // check if message is received
                 if ((messageFlags & 2) == 0) {
-                    service.submit(() -> handleMessageUpdate(currentUpdate));
+                    handleMessageAsync(() -> handleMessageUpdate(currentUpdate));
                 }
 
                 // handle every
@@ -114,8 +111,8 @@ public class UpdatesHandlerUser extends UpdatesHandler {
 
                     String title = attachments.getString("source_text");
 
-                    if (chatCallbacks.containsKey("onChatCreatedCallback")) {
-                        ((CallbackTriple<String, Integer, Integer>) chatCallbacks.get("onChatCreatedCallback")).onEvent(title, from, chatId);
+                    for (Object callback : callbacks.get(CallbackType.CHAT_CREATED)) {
+                        ((CallbackTriple<String, Integer, Integer>) callback).onEvent(title, from, chatId);
                     }
                     break;
                 }
@@ -124,8 +121,8 @@ public class UpdatesHandlerUser extends UpdatesHandler {
                     String oldTitle = attachments.getString("source_old_text");
                     String newTitle = attachments.getString("source_text");
 
-                    if (chatCallbacks.containsKey("OnChatTitleChangedCallback")) {
-                        ((CallbackFourth<String, String, Integer, Integer>) chatCallbacks.get("OnChatTitleChangedCallback")).onEvent(oldTitle, newTitle, from, chatId);
+                    for (Object callback : callbacks.get(CallbackType.CHAT_TITLE_CHANGED)) {
+                        ((CallbackFourth<String, String, Integer, Integer>) callback).onEvent(oldTitle, newTitle, from, chatId);
                     }
                     break;
                 }
@@ -133,8 +130,8 @@ public class UpdatesHandlerUser extends UpdatesHandler {
 
                     JSONObject photo = new JSONObject(client.api().callSync("messages.getById", client, "message_ids", updateObject.getInt(1))).getJSONObject("response").getJSONArray("items").getJSONObject(0).getJSONArray("attachments").getJSONObject(0).getJSONObject("photo");
 
-                    if (chatCallbacks.containsKey("onChatPhotoChangedCallback")) {
-                        ((CallbackTriple<JSONObject, Integer, Integer>) chatCallbacks.get("onChatPhotoChangedCallback")).onEvent(photo, from, chatId);
+                    for (Object callback : callbacks.get(CallbackType.CHAT_PHOTO_CHANGED)) {
+                        ((CallbackTriple<JSONObject, Integer, Integer>) callback).onEvent(photo, from, chatId);
                     }
 
                     break;
@@ -143,8 +140,8 @@ public class UpdatesHandlerUser extends UpdatesHandler {
 
                     Integer user = Integer.valueOf(attachments.getString("source_mid"));
 
-                    if (chatCallbacks.containsKey("OnChatJoinCallback")) {
-                        ((CallbackTriple<Integer, Integer, Integer>) chatCallbacks.get("OnChatJoinCallback")).onEvent(from, user, chatId);
+                    for (Object callback : callbacks.get(CallbackType.CHAT_JOIN)) {
+                        ((CallbackTriple<Integer, Integer, Integer>) callback).onEvent(from, user, chatId);
                     }
                     break;
                 }
@@ -152,15 +149,15 @@ public class UpdatesHandlerUser extends UpdatesHandler {
 
                     Integer user = Integer.valueOf(attachments.getString("source_mid"));
 
-                    if (chatCallbacks.containsKey("OnChatLeaveCallback")) {
-                        ((CallbackTriple<Integer, Integer, Integer>) chatCallbacks.get("OnChatLeaveCallback")).onEvent(from, user, chatId);
+                    for (Object callback : callbacks.get(CallbackType.CHAT_LEAVE)) {
+                        ((CallbackTriple<Integer, Integer, Integer>) callback).onEvent(from, user, chatId);
                     }
                     break;
                 }
                 case "chat_photo_remove": {
 
-                    if (chatCallbacks.containsKey("onChatPhotoRemovedCallback")) {
-                        ((CallbackDouble<Integer, Integer>) chatCallbacks.get("onChatPhotoRemovedCallback")).onEvent(from, chatId);
+                    for (Object callback : callbacks.get(CallbackType.CHAT_PHOTO_REMOVED)) {
+                        ((CallbackDouble<Integer, Integer>) callback).onEvent(from, chatId);
                     }
                     break;
                 }
@@ -173,9 +170,7 @@ public class UpdatesHandlerUser extends UpdatesHandler {
      */
     @SuppressWarnings("unchecked")
     private void handleEveryLongPollUpdate(JSONArray updateObject) {
-        if (callbacks.containsKey("OnEveryLongPollEventCallback")) {
-            callbacks.get("OnEveryLongPollEventCallback").onResult(updateObject);
-        }
+        dispatch(callbacks, CallbackType.EVERY_LONGPOLL_EVENT, updateObject);
     }
 
     /**
@@ -184,9 +179,6 @@ public class UpdatesHandlerUser extends UpdatesHandler {
     @SuppressWarnings("unchecked")
     private void handleMessageUpdate(JSONArray updateObject) {
 
-        // Flag
-        boolean messageIsAlreadyHandled = false;
-
         // All necessary data
         int messageId = updateObject.getInt(1),
                 peerId = updateObject.getInt(3),
@@ -228,140 +220,7 @@ public class UpdatesHandlerUser extends UpdatesHandler {
             handleChatEvents(updateObject);
         }
 
-        // check for commands
-        if (this.client.commands.size() > 0) {
-            messageIsAlreadyHandled = handleCommands(message);
-        }
-
-        if (message.hasFwds()) {
-            if (callbacks.containsKey("OnMessageWithFwdsCallback")) {
-                callbacks.get("OnMessageWithFwdsCallback").onResult(message);
-                messageIsAlreadyHandled = true;
-
-                handleSendTyping(message);
-            }
-        }
-
-        if (!messageIsAlreadyHandled) {
-            switch (message.messageType()) {
-
-                case "voiceMessage": {
-                    if (callbacks.containsKey("OnVoiceMessageCallback")) {
-                        callbacks.get("OnVoiceMessageCallback").onResult(message);
-                        messageIsAlreadyHandled = true;
-
-                        handleSendTyping(message);
-                    }
-                    break;
-                }
-
-                case "stickerMessage": {
-                    if (callbacks.containsKey("OnStickerMessageCallback")) {
-                        callbacks.get("OnStickerMessageCallback").onResult(message);
-                        messageIsAlreadyHandled = true;
-
-                        handleSendTyping(message);
-                    }
-                    break;
-                }
-
-                case "gifMessage": {
-                    if (callbacks.containsKey("OnGifMessageCallback")) {
-                        callbacks.get("OnGifMessageCallback").onResult(message);
-                        messageIsAlreadyHandled = true;
-
-                        handleSendTyping(message);
-                    }
-                    break;
-                }
-
-                case "audioMessage": {
-                    if (callbacks.containsKey("OnAudioMessageCallback")) {
-                        callbacks.get("OnAudioMessageCallback").onResult(message);
-                        messageIsAlreadyHandled = true;
-
-                        handleSendTyping(message);
-                    }
-                    break;
-                }
-
-                case "videoMessage": {
-                    if (callbacks.containsKey("OnVideoMessageCallback")) {
-                        callbacks.get("OnVideoMessageCallback").onResult(message);
-                        messageIsAlreadyHandled = true;
-
-                        handleSendTyping(message);
-                    }
-                    break;
-                }
-
-                case "docMessage": {
-                    if (callbacks.containsKey("OnDocMessageCallback")) {
-                        callbacks.get("OnDocMessageCallback").onResult(message);
-                        messageIsAlreadyHandled = true;
-
-                        handleSendTyping(message);
-                    }
-                    break;
-                }
-
-                case "wallMessage": {
-                    if (callbacks.containsKey("OnWallMessageCallback")) {
-                        callbacks.get("OnWallMessageCallback").onResult(message);
-                        messageIsAlreadyHandled = true;
-
-                        handleSendTyping(message);
-                    }
-                    break;
-                }
-
-                case "photoMessage": {
-                    if (callbacks.containsKey("OnPhotoMessageCallback")) {
-                        callbacks.get("OnPhotoMessageCallback").onResult(message);
-                        messageIsAlreadyHandled = true;
-
-                        handleSendTyping(message);
-                    }
-                    break;
-                }
-
-                case "linkMessage": {
-                    if (callbacks.containsKey("OnLinkMessageCallback")) {
-                        callbacks.get("OnLinkMessageCallback").onResult(message);
-                        messageIsAlreadyHandled = true;
-
-                        handleSendTyping(message);
-                    }
-                    break;
-                }
-
-                case "simpleTextMessage": {
-                    if (callbacks.containsKey("OnSimpleTextMessageCallback")) {
-                        callbacks.get("OnSimpleTextMessageCallback").onResult(message);
-                        messageIsAlreadyHandled = true;
-
-                        handleSendTyping(message);
-                    }
-                    break;
-                }
-            }
-        }
-
-        if (callbacks.containsKey("OnMessageCallback") && !messageIsAlreadyHandled) {
-            callbacks.get("OnMessageCallback").onResult(message);
-
-            handleSendTyping(message);
-        }
-
-        if (callbacks.containsKey("OnChatMessageCallback") && !messageIsAlreadyHandled) {
-            callbacks.get("OnChatMessageCallback").onResult(message);
-        }
-
-        if (callbacks.containsKey("OnEveryMessageCallback")) {
-            callbacks.get("OnEveryMessageCallback").onResult(message);
-
-            handleSendTyping(message);
-        }
+        handleMessage(message);
     }
 
     private void handleOnline(JSONArray updateObject) {
@@ -369,8 +228,8 @@ public class UpdatesHandlerUser extends UpdatesHandler {
                 timestamp = updateObject.getInt(3);
 
 
-        if (callbacks.containsKey("OnFriendOnlineCallback")) {
-            ((CallbackDouble<Integer, Integer>) abstractCallbacks.get("OnFriendOnlineCallback")).onEvent(targetId, timestamp);
+        for (Object callback : callbacks.get(CallbackType.FRIEND_ONLINE)) {
+            ((CallbackDouble<Integer, Integer>) callback).onEvent(targetId, timestamp);
         }
     }
 
@@ -378,8 +237,8 @@ public class UpdatesHandlerUser extends UpdatesHandler {
         Integer targetId = updateObject.getInt(1),
                 timestamp = updateObject.getInt(3);
 
-        if (callbacks.containsKey("OnFriendOfflineCallback")) {
-            ((CallbackDouble<Integer, Integer>) abstractCallbacks.get("OnFriendOfflineCallback")).onEvent(targetId, timestamp);
+        for (Object callback : callbacks.get(CallbackType.FRIEND_OFFLINE)) {
+            ((CallbackDouble<Integer, Integer>) callback).onEvent(targetId, timestamp);
         }
     }
 
@@ -389,48 +248,6 @@ public class UpdatesHandlerUser extends UpdatesHandler {
     @SuppressWarnings("unchecked")
     private void handleTypingUpdate(JSONArray updateObject) {
 
-        if (callbacks.containsKey("OnTypingCallback")) {
-            callbacks.get("OnTypingCallback").onResult(updateObject.getInt(1));
-        }
-    }
-
-    /**
-     * Handle message and call back if it contains any command
-     *
-     * @param message received message
-     */
-    private boolean handleCommands(Message message) {
-
-        boolean is = false;
-
-        for (Client.Command command : this.client.commands) {
-            for (int i = 0; i < command.getCommands().length; i++) {
-                if (message.getText().toLowerCase().contains(command.getCommands()[i].toString().toLowerCase())) {
-                    command.getCallback().onResult(message);
-                    is = true;
-
-                    handleSendTyping(message);
-                }
-            }
-        }
-
-        return is;
-    }
-
-    /**
-     * Send typing
-     */
-    private void handleSendTyping(Message message) {
-
-        // Send typing
-        if (sendTyping) {
-            if (!message.isMessageFromChat()) {
-                this.client.api().call("messages.setActivity", "{type:'typing',peer_id:" + message.authorId() + "}", response -> {
-                });
-            } else {
-                this.client.api().call("messages.setActivity", "{type:'typing',peer_id:" + message.getChatIdLong() + "}", response -> {
-                });
-            }
-        }
+        dispatch(callbacks, CallbackType.TYPING, updateObject.getInt(1));
     }
 }
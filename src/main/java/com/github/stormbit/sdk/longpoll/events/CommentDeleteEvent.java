@@ -0,0 +1,57 @@
+package com.github.stormbit.sdk.longpoll.events;
+
+import com.github.stormbit.sdk.longpoll.Events;
+import org.json.JSONObject;
+
+/**
+ * Events of deleted comments:
+ * photo_comment_delete, video_comment_delete, wall_reply_delete, board_post_delete, market_comment_delete
+ */
+@SuppressWarnings("unused")
+public class CommentDeleteEvent extends Event {
+
+    public CommentDeleteEvent(Events type, JSONObject update) {
+        super(type, update);
+    }
+
+    public Integer getId() {
+        return getInteger("id");
+    }
+
+    public Integer getOwnerId() {
+        return getInteger("owner_id");
+    }
+
+    /**
+     * @return user who deleted comment
+     */
+    public Integer getDeleterId() {
+        Integer deleter = getInteger("deleter_id");
+        return deleter != null ? deleter : getInteger("user_id");
+    }
+
+    /**
+     * @return id of photo, video, post, topic or item that was commented
+     */
+    public Integer getParentId() {
+        return getInteger(parentKey(getType()) + "_id");
+    }
+
+    static String parentKey(Events type) {
+        String name = type.getType();
+
+        if (name.startsWith("wall_")) return "post";
+        if (name.startsWith("board_")) return "topic";
+        if (name.startsWith("market_")) return "item";
+
+        return name.substring(0, name.indexOf('_'));
+    }
+
+    static String parentOwnerKey(Events type) {
+        String name = type.getType();
+
+        if (name.startsWith("market_")) return "market_owner_id";
+
+        return parentKey(type) + "_owner_id";
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.stormbit.sdk.longpoll.events;
+
+import com.github.stormbit.sdk.longpoll.Events;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Events of new, edited and restored comments:
+ * photo_comment_*, video_comment_*, wall_reply_*, board_post_*, market_comment_*
+ */
+@SuppressWarnings("unused")
+public class CommentEvent extends Event {
+
+    public CommentEvent(Events type, JSONObject update) {
+        super(type, update);
+    }
+
+    public Integer getId() {
+        return getInteger("id");
+    }
+
+    public Integer getFromId() {
+        return getInteger("from_id");
+    }
+
+    public Integer getDate() {
+        return getInteger("date");
+    }
+
+    public String getText() {
+        return getString("text");
+    }
+
+    public JSONArray getAttachments() {
+        return getArray("attachments");
+    }
+
+    /**
+     * @return id of photo, video, post, topic or item that is commented
+     */
+    public Integer getParentId() {
+        return getInteger(CommentDeleteEvent.parentKey(getType()) + "_id");
+    }
+
+    /**
+     * @return owner of photo, video, post, topic or item that is commented
+     */
+    public Integer getParentOwnerId() {
+        return getInteger(CommentDeleteEvent.parentOwnerKey(getType()));
+    }
+}
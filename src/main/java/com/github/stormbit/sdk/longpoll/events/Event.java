@@ -0,0 +1,69 @@
+package com.github.stormbit.sdk.longpoll.events;
+
+import com.github.stormbit.sdk.longpoll.Events;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Event of group longpoll server or Callback API
+ * <p>
+ * Fields are read from object of event only when they are asked,
+ * nested objects are converted once and cached.
+ * Object of event must not be modified by callbacks.
+ * More: <a href="https://vk.com/dev/groups_events">link</a>
+ */
+@SuppressWarnings("unused")
+public class Event {
+
+    private final Events type;
+    private final Integer groupId;
+
+    protected final JSONObject object;
+
+    /**
+     * @param type   Type of event
+     * @param update Update from longpoll server: {type, object, group_id}
+     */
+    public Event(Events type, JSONObject update) {
+        this.type = type;
+        this.groupId = update.has("group_id") ? update.optInt("group_id") : null;
+        this.object = update.optJSONObject("object") != null ? update.getJSONObject("object") : new JSONObject();
+    }
+
+    public Events getType() {
+        return type;
+    }
+
+    public Integer getGroupId() {
+        return groupId;
+    }
+
+    /**
+     * @return object of event as it was received
+     */
+    public JSONObject getObject() {
+        return object;
+    }
+
+    protected Integer getInteger(String key) {
+        return object.has(key) && !object.isNull(key) ? object.optInt(key) : null;
+    }
+
+    protected String getString(String key) {
+        return object.has(key) && !object.isNull(key) ? object.optString(key) : null;
+    }
+
+    protected boolean getBoolean(String key) {
+        return object.optInt(key, object.optBoolean(key) ? 1 : 0) == 1;
+    }
+
+    protected JSONArray getArray(String key) {
+        JSONArray array = object.optJSONArray(key);
+        return array != null ? array : new JSONArray();
+    }
+
+    @Override
+    public String toString() {
+        return "{\"type\": \"" + type.getType() + "\", \"object\": " + object + "}";
+    }
+}
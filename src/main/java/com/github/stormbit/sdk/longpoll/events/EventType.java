@@ -0,0 +1,103 @@
+package com.github.stormbit.sdk.longpoll.events;
+
+import com.github.stormbit.sdk.longpoll.Events;
+import org.json.JSONObject;
+
+import java.util.function.BiFunction;
+
+/**
+ * Typed key of event: binds type of event to class of its object
+ * <p>
+ * Usage: {@code group.onEvent(EventType.WALL_POST_NEW, post -> post.getText())}
+ *
+ * @param <T> class of event
+ */
+@SuppressWarnings("unused")
+public final class EventType<T extends Event> {
+
+    private static final EventType<?>[] TYPES = new EventType<?>[Events.values().length];
+
+    public static final EventType<MessageEvent> MESSAGE_NEW = new EventType<>(Events.MESSAGE_NEW, MessageEvent::new);
+    public static final EventType<MessageEvent> MESSAGE_REPLY = new EventType<>(Events.MESSAGE_REPLY, MessageEvent::new);
+    public static final EventType<MessageEvent> MESSAGE_EDIT = new EventType<>(Events.MESSAGE_EDIT, MessageEvent::new);
+    public static final EventType<TypingStateEvent> MESSAGE_TYPING_STATE = new EventType<>(Events.MESSAGE_TYPING_STATE, TypingStateEvent::new);
+    public static final EventType<MessageAccessEvent> MESSAGE_ALLOW = new EventType<>(Events.MESSAGE_ALLOW, MessageAccessEvent::new);
+    public static final EventType<MessageAccessEvent> MESSAGE_DENY = new EventType<>(Events.MESSAGE_DENY, MessageAccessEvent::new);
+
+    public static final EventType<MediaEvent> PHOTO_NEW = new EventType<>(Events.PHOTO_NEW, MediaEvent::new);
+    public static final EventType<CommentEvent> PHOTO_COMMENT_NEW = new EventType<>(Events.PHOTO_COMMENT_NEW, CommentEvent::new);
+    public static final EventType<CommentEvent> PHOTO_COMMENT_EDIT = new EventType<>(Events.PHOTO_COMMENT_EDIT, CommentEvent::new);
+    public static final EventType<CommentEvent> PHOTO_COMMENT_RESTORE = new EventType<>(Events.PHOTO_COMMENT_RESTORE, CommentEvent::new);
+    public static final EventType<CommentDeleteEvent> PHOTO_COMMENT_DELETE = new EventType<>(Events.PHOTO_COMMENT_DELETE, CommentDeleteEvent::new);
+
+    public static final EventType<MediaEvent> AUDIO_NEW = new EventType<>(Events.AUDIO_NEW, MediaEvent::new);
+
+    public static final EventType<MediaEvent> VIDEO_NEW = new EventType<>(Events.VIDEO_NEW, MediaEvent::new);
+    public static final EventType<CommentEvent> VIDEO_COMMENT_NEW = new EventType<>(Events.VIDEO_COMMENT_NEW, CommentEvent::new);
+    public static final EventType<CommentEvent> VIDEO_COMMENT_EDIT = new EventType<>(Events.VIDEO_COMMENT_EDIT, CommentEvent::new);
+    public static final EventType<CommentEvent> VIDEO_COMMENT_RESTORE = new EventType<>(Events.VIDEO_COMMENT_RESTORE, CommentEvent::new);
+    public static final EventType<CommentDeleteEvent> VIDEO_COMMENT_DELETE = new EventType<>(Events.VIDEO_COMMENT_DELETE, CommentDeleteEvent::new);
+
+    public static final EventType<WallPostEvent> WALL_POST_NEW = new EventType<>(Events.WALL_POST_NEW, WallPostEvent::new);
+    public static final EventType<WallPostEvent> WALL_REPOST = new EventType<>(Events.WALL_REPOST, WallPostEvent::new);
+    public static final EventType<CommentEvent> WALL_REPLY_NEW = new EventType<>(Events.WALL_REPLY_NEW, CommentEvent::new);
+    public static final EventType<CommentEvent> WALL_REPLY_EDIT = new EventType<>(Events.WALL_REPLY_EDIT, CommentEvent::new);
+    public static final EventType<CommentEvent> WALL_REPLY_RESTORE = new EventType<>(Events.WALL_REPLY_RESTORE, CommentEvent::new);
+    public static final EventType<CommentDeleteEvent> WALL_REPLY_DELETE = new EventType<>(Events.WALL_REPLY_DELETE, CommentDeleteEvent::new);
+
+    public static final EventType<CommentEvent> BOARD_POST_NEW = new EventType<>(Events.BOARD_POST_NEW, CommentEvent::new);
+    public static final EventType<CommentEvent> BOARD_POST_EDIT = new EventType<>(Events.BOARD_POST_EDIT, CommentEvent::new);
+    public static final EventType<CommentEvent> BOARD_POST_RESTORE = new EventType<>(Events.BOARD_POST_RESTORE, CommentEvent::new);
+    public static final EventType<CommentDeleteEvent> BOARD_POST_DELETE = new EventType<>(Events.BOARD_POST_DELETE, CommentDeleteEvent::new);
+
+    public static final EventType<CommentEvent> MARKET_COMMENT_NEW = new EventType<>(Events.MARKET_COMMENT_NEW, CommentEvent::new);
+    public static final EventType<CommentEvent> MARKET_COMMENT_EDIT = new EventType<>(Events.MARKET_COMMENT_EDIT, CommentEvent::new);
+    public static final EventType<CommentEvent> MARKET_COMMENT_RESTORE = new EventType<>(Events.MARKET_COMMENT_RESTORE, CommentEvent::new);
+    public static final EventType<CommentDeleteEvent> MARKET_COMMENT_DELETE = new EventType<>(Events.MARKET_COMMENT_DELETE, CommentDeleteEvent::new);
+
+    public static final EventType<GroupMemberEvent> GROUP_LEAVE = new EventType<>(Events.GROUP_LEAVE, GroupMemberEvent::new);
+    public static final EventType<GroupMemberEvent> GROUP_JOIN = new EventType<>(Events.GROUP_JOIN, GroupMemberEvent::new);
+    public static final EventType<UserBlockEvent> USER_BLOCK = new EventType<>(Events.USER_BLOCK, UserBlockEvent::new);
+    public static final EventType<UserBlockEvent> USER_UNBLOCK = new EventType<>(Events.USER_UNBLOCK, UserBlockEvent::new);
+
+    public static final EventType<PollVoteEvent> POLL_VOTE_NEW = new EventType<>(Events.POLL_VOTE_NEW, PollVoteEvent::new);
+    public static final EventType<OfficersEditEvent> GROUP_OFFICERS_EDIT = new EventType<>(Events.GROUP_OFFICERS_EDIT, OfficersEditEvent::new);
+    public static final EventType<GroupChangeEvent> GROUP_CHANGE_SETTINGS = new EventType<>(Events.GROUP_CHANGE_SETTINGS, GroupChangeEvent::new);
+    public static final EventType<GroupChangeEvent> GROUP_CHANGE_PHOTO = new EventType<>(Events.GROUP_CHANGE_PHOTO, GroupChangeEvent::new);
+    public static final EventType<VkPayTransactionEvent> VKPAY_TRANSACTION = new EventType<>(Events.VKPAY_TRANSACTION, VkPayTransactionEvent::new);
+
+    private final Events event;
+    private final BiFunction<Events, JSONObject, T> factory;
+
+    private EventType(Events event, BiFunction<Events, JSONObject, T> factory) {
+        this.event = event;
+        this.factory = factory;
+
+        TYPES[event.ordinal()] = this;
+    }
+
+    public Events getEvent() {
+        return event;
+    }
+
+    /**
+     * @param update update from longpoll server or Callback API
+     * @return event that reads object of update
+     */
+    public T create(JSONObject update) {
+        return factory.apply(event, update);
+    }
+
+    /**
+     * @param event type of event
+     * @return typed key of event
+     */
+    public static EventType<?> of(Events event) {
+        return TYPES[event.ordinal()];
+    }
+
+    @Override
+    public String toString() {
+        return event.getType();
+    }
+}
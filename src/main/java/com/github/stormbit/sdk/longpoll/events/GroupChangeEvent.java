@@ -0,0 +1,34 @@
+package com.github.stormbit.sdk.longpoll.events;
+
+import com.github.stormbit.sdk.longpoll.Events;
+import org.json.JSONObject;
+
+/**
+ * Events: group_change_settings, group_change_photo
+ */
+@SuppressWarnings("unused")
+public class GroupChangeEvent extends Event {
+
+    public GroupChangeEvent(Events type, JSONObject update) {
+        super(type, update);
+    }
+
+    public Integer getUserId() {
+        return getInteger("user_id");
+    }
+
+    /**
+     * @return changed settings: {field: {old_value, new_value}}, or {} for group_change_photo
+     */
+    public JSONObject getChanges() {
+        JSONObject changes = object.optJSONObject("changes");
+        return changes != null ? changes : new JSONObject();
+    }
+
+    /**
+     * @return new photo, or null for group_change_settings
+     */
+    public JSONObject getPhoto() {
+        return object.optJSONObject("photo");
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.stormbit.sdk.longpoll.events;
+
+import com.github.stormbit.sdk.longpoll.Events;
+import org.json.JSONObject;
+
+/**
+ * Events: group_join, group_leave
+ */
+@SuppressWarnings("unused")
+public class GroupMemberEvent extends Event {
+
+    public GroupMemberEvent(Events type, JSONObject update) {
+        super(type, update);
+    }
+
+    public Integer getUserId() {
+        return getInteger("user_id");
+    }
+
+    /**
+     * @return join, unsure, accepted, approved, request; null for group_leave
+     */
+    public String getJoinType() {
+        return getString("join_type");
+    }
+
+    /**
+     * @return true if user left group by himself, false if he was removed
+     */
+    public boolean isSelf() {
+        return getBoolean("self");
+    }
+
+    public boolean isJoin() {
+        return getType() == Events.GROUP_JOIN;
+    }
+}
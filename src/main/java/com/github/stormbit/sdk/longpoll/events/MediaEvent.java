@@ -0,0 +1,36 @@
+package com.github.stormbit.sdk.longpoll.events;
+
+import com.github.stormbit.sdk.longpoll.Events;
+import org.json.JSONObject;
+
+/**
+ * Events: photo_new, audio_new, video_new
+ * <p>
+ * Object of event is photo, audio or video object
+ */
+@SuppressWarnings("unused")
+public class MediaEvent extends Event {
+
+    public MediaEvent(Events type, JSONObject update) {
+        super(type, update);
+    }
+
+    public Integer getId() {
+        return getInteger("id");
+    }
+
+    public Integer getOwnerId() {
+        return getInteger("owner_id");
+    }
+
+    public Integer getDate() {
+        return getInteger("date");
+    }
+
+    /**
+     * @return attachment string like photo-1_2
+     */
+    public String toAttachment() {
+        return getType().getType().replace("_new", "") + getOwnerId() + "_" + getId();
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.stormbit.sdk.longpoll.events;
+
+import com.github.stormbit.sdk.longpoll.Events;
+import org.json.JSONObject;
+
+/**
+ * Events: message_allow, message_deny
+ */
+@SuppressWarnings("unused")
+public class MessageAccessEvent extends Event {
+
+    public MessageAccessEvent(Events type, JSONObject update) {
+        super(type, update);
+    }
+
+    public Integer getUserId() {
+        return getInteger("user_id");
+    }
+
+    /**
+     * @return key from allowMessagesFromGroup, or null for message_deny
+     */
+    public String getKey() {
+        return getString("key");
+    }
+
+    public boolean isAllowed() {
+        return getType() == Events.MESSAGE_ALLOW;
+    }
+}
@@ -0,0 +1,101 @@
+package com.github.stormbit.sdk.longpoll.events;
+
+import com.github.stormbit.sdk.longpoll.Events;
+import com.github.stormbit.sdk.objects.AttachmentsSummary;
+import com.github.stormbit.sdk.objects.Chat;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Events: message_new, message_reply, message_edit
+ * <p>
+ * More: <a href="https://vk.com/dev/objects/message">link</a>
+ */
+@SuppressWarnings("unused")
+public class MessageEvent extends Event {
+
+    private volatile JSONObject payload;
+    private volatile AttachmentsSummary attachmentsSummary;
+
+    public MessageEvent(Events type, JSONObject update) {
+        super(type, update);
+    }
+
+    public Integer getId() {
+        return getInteger("id");
+    }
+
+    public Integer getConversationMessageId() {
+        return getInteger("conversation_message_id");
+    }
+
+    public Integer getDate() {
+        return getInteger("date");
+    }
+
+    public Integer getPeerId() {
+        return getInteger("peer_id");
+    }
+
+    public Integer getFromId() {
+        return getInteger("from_id");
+    }
+
+    public String getText() {
+        return getString("text");
+    }
+
+    public Integer getRandomId() {
+        return getInteger("random_id");
+    }
+
+    public boolean isFromChat() {
+        Integer peerId = getPeerId();
+        return peerId != null && peerId > Chat.CHAT_PREFIX;
+    }
+
+    /**
+     * @return payload of button, or {} if there is no payload
+     */
+    public JSONObject getPayload() {
+        if (payload == null) {
+            JSONObject parsed;
+
+            try {
+                parsed = object.has("payload") ? new JSONObject(object.getString("payload")) : new JSONObject();
+            } catch (JSONException e) {
+                parsed = new JSONObject();
+            }
+            payload = parsed;
+        }
+
+        return payload;
+    }
+
+    public JSONArray getAttachments() {
+        return getArray("attachments");
+    }
+
+    /**
+     * @return types and counts of attachments
+     */
+    public AttachmentsSummary getAttachmentsSummary() {
+        if (attachmentsSummary == null) {
+            attachmentsSummary = AttachmentsSummary.of(getAttachments());
+        }
+
+        return attachmentsSummary;
+    }
+
+    public JSONArray getFwdMessages() {
+        return getArray("fwd_messages");
+    }
+
+    /**
+     * @return reply message or null
+     */
+    public JSONObject getReplyMessage() {
+        return object.optJSONObject("reply_message");
+    }
+}
@@ -0,0 +1,33 @@
+package com.github.stormbit.sdk.longpoll.events;
+
+import com.github.stormbit.sdk.longpoll.Events;
+import org.json.JSONObject;
+
+/**
+ * Event: group_officers_edit
+ * <p>
+ * Levels: 0 - no rights, 1 - moderator, 2 - editor, 3 - administrator
+ */
+@SuppressWarnings("unused")
+public class OfficersEditEvent extends Event {
+
+    public OfficersEditEvent(Events type, JSONObject update) {
+        super(type, update);
+    }
+
+    public Integer getAdminId() {
+        return getInteger("admin_id");
+    }
+
+    public Integer getUserId() {
+        return getInteger("user_id");
+    }
+
+    public Integer getLevelOld() {
+        return getInteger("level_old");
+    }
+
+    public Integer getLevelNew() {
+        return getInteger("level_new");
+    }
+}
@@ -0,0 +1,31 @@
+package com.github.stormbit.sdk.longpoll.events;
+
+import com.github.stormbit.sdk.longpoll.Events;
+import org.json.JSONObject;
+
+/**
+ * Event: poll_vote_new
+ */
+@SuppressWarnings("unused")
+public class PollVoteEvent extends Event {
+
+    public PollVoteEvent(Events type, JSONObject update) {
+        super(type, update);
+    }
+
+    public Integer getOwnerId() {
+        return getInteger("owner_id");
+    }
+
+    public Integer getPollId() {
+        return getInteger("poll_id");
+    }
+
+    public Integer getOptionId() {
+        return getInteger("option_id");
+    }
+
+    public Integer getUserId() {
+        return getInteger("user_id");
+    }
+}
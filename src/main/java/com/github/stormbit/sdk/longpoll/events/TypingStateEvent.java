@@ -0,0 +1,30 @@
+package com.github.stormbit.sdk.longpoll.events;
+
+import com.github.stormbit.sdk.longpoll.Events;
+import org.json.JSONObject;
+
+/**
+ * Event: message_typing_state
+ */
+@SuppressWarnings("unused")
+public class TypingStateEvent extends Event {
+
+    public TypingStateEvent(Events type, JSONObject update) {
+        super(type, update);
+    }
+
+    /**
+     * @return typing, or other state
+     */
+    public String getState() {
+        return getString("state");
+    }
+
+    public Integer getFromId() {
+        return getInteger("from_id");
+    }
+
+    public Integer getToId() {
+        return getInteger("to_id");
+    }
+}
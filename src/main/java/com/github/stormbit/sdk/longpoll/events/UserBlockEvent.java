@@ -0,0 +1,49 @@
+package com.github.stormbit.sdk.longpoll.events;
+
+import com.github.stormbit.sdk.longpoll.Events;
+import org.json.JSONObject;
+
+/**
+ * Events: user_block, user_unblock
+ */
+@SuppressWarnings("unused")
+public class UserBlockEvent extends Event {
+
+    public UserBlockEvent(Events type, JSONObject update) {
+        super(type, update);
+    }
+
+    public Integer getAdminId() {
+        return getInteger("admin_id");
+    }
+
+    public Integer getUserId() {
+        return getInteger("user_id");
+    }
+
+    /**
+     * @return date of unblocking, 0 if user is blocked forever
+     */
+    public Integer getUnblockDate() {
+        return getInteger("unblock_date");
+    }
+
+    public Integer getReason() {
+        return getInteger("reason");
+    }
+
+    public String getComment() {
+        return getString("comment");
+    }
+
+    /**
+     * @return true if user was unblocked because block time is over
+     */
+    public boolean isByEndDate() {
+        return getBoolean("by_end_date");
+    }
+
+    public boolean isBlock() {
+        return getType() == Events.USER_BLOCK;
+    }
+}
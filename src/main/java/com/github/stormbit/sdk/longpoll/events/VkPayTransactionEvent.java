@@ -0,0 +1,34 @@
+package com.github.stormbit.sdk.longpoll.events;
+
+import com.github.stormbit.sdk.longpoll.Events;
+import org.json.JSONObject;
+
+/**
+ * Event: vkpay_transaction
+ */
+@SuppressWarnings("unused")
+public class VkPayTransactionEvent extends Event {
+
+    public VkPayTransactionEvent(Events type, JSONObject update) {
+        super(type, update);
+    }
+
+    public Integer getFromId() {
+        return getInteger("from_id");
+    }
+
+    /**
+     * @return amount in thousandths of ruble
+     */
+    public Integer getAmount() {
+        return getInteger("amount");
+    }
+
+    public String getDescription() {
+        return getString("description");
+    }
+
+    public Integer getDate() {
+        return getInteger("date");
+    }
+}
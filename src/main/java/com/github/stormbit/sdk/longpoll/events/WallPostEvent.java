@@ -0,0 +1,56 @@
+package com.github.stormbit.sdk.longpoll.events;
+
+import com.github.stormbit.sdk.longpoll.Events;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Events: wall_post_new, wall_repost
+ * <p>
+ * More: <a href="https://vk.com/dev/objects/post">link</a>
+ */
+@SuppressWarnings("unused")
+public class WallPostEvent extends Event {
+
+    public WallPostEvent(Events type, JSONObject update) {
+        super(type, update);
+    }
+
+    public Integer getId() {
+        return getInteger("id");
+    }
+
+    public Integer getOwnerId() {
+        return getInteger("owner_id");
+    }
+
+    public Integer getFromId() {
+        return getInteger("from_id");
+    }
+
+    public Integer getDate() {
+        return getInteger("date");
+    }
+
+    public String getText() {
+        return getString("text");
+    }
+
+    /**
+     * @return post, copy, reply, postpone or suggest
+     */
+    public String getPostType() {
+        return getString("post_type");
+    }
+
+    public JSONArray getAttachments() {
+        return getArray("attachments");
+    }
+
+    /**
+     * @return reposted posts
+     */
+    public JSONArray getCopyHistory() {
+        return getArray("copy_history");
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.stormbit.sdk.longpoll.responses;
+
+/**
+ * Deserialize object of longpoll server response, without updates:
+ * updates are handled one by one while response is read
+ * <p>
+ * More: <a href="https://vk.com/dev/using_longpoll">link</a>
+ */
+public class LongPollResponse {
+
+    private Integer ts;
+    private Integer pts;
+    private Integer failed;
+    private Integer maxVersion;
+    private int updatesCount = -1;
+
+    // Getters and Setters
+
+    public Integer getTs() {
+        return ts;
+    }
+
+    public void setTs(Integer ts) {
+        this.ts = ts;
+    }
+
+    public Integer getPts() {
+        return pts;
+    }
+
+    public void setPts(Integer pts) {
+        this.pts = pts;
+    }
+
+    /**
+     * @return code of error, or null if there is no error
+     */
+    public Integer getFailed() {
+        return failed;
+    }
+
+    public void setFailed(Integer failed) {
+        this.failed = failed;
+    }
+
+    public Integer getMaxVersion() {
+        return maxVersion;
+    }
+
+    public void setMaxVersion(Integer maxVersion) {
+        this.maxVersion = maxVersion;
+    }
+
+    /**
+     * @return count of updates, or -1 if there is no 'updates' array in response
+     */
+    public int getUpdatesCount() {
+        return updatesCount;
+    }
+
+    public void setUpdatesCount(int updatesCount) {
+        this.updatesCount = updatesCount;
+    }
+
+    public boolean hasUpdates() {
+        return updatesCount >= 0;
+    }
+
+    @Override
+    public String toString() {
+        return "{\"ts\": " + ts + ", \"pts\": " + pts + ", \"failed\": " + failed + ", \"updates_count\": " + updatesCount + "}";
+    }
+}
@@ -0,0 +1,215 @@
+package com.github.stormbit.sdk.objects;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable summary of attachments of received message:
+ * set of types and count of attachments of every type
+ * <p>
+ * Built once from attachments of event,
+ * so checks of message kind do not parse or serialize json again.
+ */
+public final class AttachmentsSummary {
+
+    /**
+     * Types of attachments
+     */
+    public enum Type {
+        PHOTO("photo"),
+        VIDEO("video"),
+        AUDIO("audio"),
+        DOC("doc"),
+        WALL("wall"),
+        STICKER("sticker"),
+        LINK("link"),
+        VOICE("voice"),
+        GIF("gif");
+
+        private static final Type[] TYPES = values();
+
+        private final String type;
+
+        Type(String type) {
+            this.type = type;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        private int bit() {
+            return 1 << ordinal();
+        }
+    }
+
+    /**
+     * Summary of message without attachments
+     */
+    public static final AttachmentsSummary EMPTY = new AttachmentsSummary(0, new int[Type.TYPES.length], true);
+
+    private final int types;
+    private final int[] counts;
+
+    /**
+     * False if attachments of event have no info about type of docs,
+     * so gif can not be found without getting message from VK
+     */
+    private final boolean docsResolved;
+
+    private AttachmentsSummary(int types, int[] counts, boolean docsResolved) {
+        this.types = types;
+        this.counts = counts;
+        this.docsResolved = docsResolved;
+    }
+
+    /**
+     * @param attachments Full attachment objects, more: <a href="https://vk.com/dev/objects/attachments_m">link</a>
+     * @return summary
+     */
+    public static AttachmentsSummary of(JSONArray attachments) {
+
+        if (attachments == null || attachments.length() == 0) {
+            return EMPTY;
+        }
+
+        int[] counts = new int[Type.TYPES.length];
+
+        for (int i = 0; i < attachments.length(); i++) {
+            JSONObject attachment = attachments.optJSONObject(i);
+
+            if (attachment == null) continue;
+
+            String type = attachment.optString("type");
+
+            switch (type) {
+                case "audio_message": {
+                    counts[Type.VOICE.ordinal()]++;
+                    break;
+                }
+                case "doc": {
+                    JSONObject doc = attachment.optJSONObject("doc");
+
+                    if (doc != null && doc.optInt("type") == 3) {
+                        counts[Type.GIF.ordinal()]++;
+                    }
+
+                    if (doc != null && doc.has("preview") && doc.getJSONObject("preview").has("audio_msg")) {
+                        counts[Type.VOICE.ordinal()]++;
+                    }
+
+                    counts[Type.DOC.ordinal()]++;
+                    break;
+                }
+                default: {
+                    count(counts, type);
+                }
+            }
+        }
+
+        return build(counts, true);
+    }
+
+    /**
+     * @param attachments Attachments in format of user longpoll server: attach1_type, attach1_kind, ...,
+     *                    more: <a href="https://vk.com/dev/using_longpoll_2">link</a>
+     * @return summary
+     */
+    public static AttachmentsSummary of(JSONObject attachments) {
+
+        if (attachments == null || attachments.length() == 0) {
+            return EMPTY;
+        }
+
+        int[] counts = new int[Type.TYPES.length];
+
+        for (int i = 1; attachments.has("attach" + i + "_type"); i++) {
+            String type = attachments.optString("attach" + i + "_type");
+
+            if (type.equals("doc") && "audiomsg".equals(attachments.optString("attach" + i + "_kind"))) {
+                counts[Type.VOICE.ordinal()]++;
+            }
+
+            count(counts, type);
+        }
+
+        // Sticker has 'attach1_type: sticker', or only 'attach1_product_id' in old versions of longpoll
+        if (counts[Type.STICKER.ordinal()] == 0 && attachments.has("attach1_product_id")) {
+            counts[Type.STICKER.ordinal()]++;
+        }
+
+        // Doc from event has no type, so gif can be found only by getting message from VK
+        return build(counts, counts[Type.DOC.ordinal()] == 0);
+    }
+
+    private static void count(int[] counts, String type) {
+        for (Type t : Type.TYPES) {
+            if (t.type.equals(type)) {
+                counts[t.ordinal()]++;
+                return;
+            }
+        }
+    }
+
+    private static AttachmentsSummary build(int[] counts, boolean docsResolved) {
+        int types = 0;
+
+        for (Type type : Type.TYPES) {
+            if (counts[type.ordinal()] > 0) {
+                types |= type.bit();
+            }
+        }
+
+        return types == 0 && docsResolved ? EMPTY : new AttachmentsSummary(types, counts, docsResolved);
+    }
+
+    public boolean has(Type type) {
+        return (types & type.bit()) != 0;
+    }
+
+    public int count(Type type) {
+        return counts[type.ordinal()];
+    }
+
+    /**
+     * @return true if message has no attachments
+     */
+    public boolean isEmpty() {
+        return types == 0;
+    }
+
+    /**
+     * @return count of different types of attachments
+     */
+    public int typesCount() {
+        return Integer.bitCount(types & ~Type.GIF.bit());
+    }
+
+    public boolean isDocsResolved() {
+        return docsResolved;
+    }
+
+    /**
+     * @return Map: key=type of attachment, value=count of attachments, key=summary - value=count of types of attachments
+     */
+    public Map<String, Integer> toMap() {
+        Map<String, Integer> answer = new HashMap<>();
+
+        for (Type type : Type.TYPES) {
+            if (type != Type.GIF) {
+                answer.put(type.type, counts[type.ordinal()]);
+            }
+        }
+        answer.put("summary", typesCount());
+
+        return answer;
+    }
+
+    @Override
+    public String toString() {
+        return new JSONObject(toMap()).toString();
+    }
+}
@@ -2,8 +2,10 @@ package com.github.stormbit.sdk.objects;
 
 import com.github.stormbit.sdk.callbacks.Callback;
 import com.github.stormbit.sdk.clients.Client;
+import com.github.stormbit.sdk.utils.Utils;
 import com.github.stormbit.sdk.utils.vkapi.API;
 import com.github.stormbit.sdk.utils.vkapi.Upload;
+import com.github.stormbit.sdk.utils.vkapi.calls.CallAsync;
 import com.github.stormbit.sdk.utils.vkapi.docs.DocTypes;
 import com.github.stormbit.sdk.utils.vkapi.keyboard.Keyboard;
 import org.json.JSONArray;
@@ -27,6 +29,7 @@ public class Message {
     private Keyboard keyboard;
     private JSONObject payload = new JSONObject();
     private String text, title;
+    private CallAsync.Priority priority = CallAsync.Priority.NORMAL;
     private API api;
     private Upload upload;
     private Client client;
@@ -37,6 +40,17 @@ public class Message {
      */
     private JSONObject attachmentsOfReceivedMessage = new JSONObject();
 
+    /**
+     * Full attachment objects, from event or from 'messages.getById'
+     * More: <a href="https://vk.com/dev/objects/attachments_m">link</a>
+     */
+    private volatile JSONArray attachmentObjects;
+
+    /**
+     * Types and counts of attachments, built once from attachments of event
+     */
+    private volatile AttachmentsSummary attachmentsSummary = AttachmentsSummary.EMPTY;
+
     /**
      * Attachments in format [photo62802565_456241137, photo111_111, doc100_500]
      */
@@ -63,6 +77,24 @@ public class Message {
      * @param randomId random id
      */
     public Message(Client client, Integer messageId, Integer peerId, Integer timestamp, String text, JSONObject attachments, Integer randomId, JSONObject payload) {
+        this(client, messageId, peerId, timestamp, text, attachments, null, randomId, payload);
+    }
+
+    /**
+     * Constructor for received message with full attachment objects, for example from group longpoll server
+     * @param client client
+     * @param messageId message id
+     * @param peerId peer id
+     * @param timestamp timestamp
+     * @param text message text
+     * @param attachments full attachment objects of message
+     * @param randomId random id
+     */
+    public Message(Client client, Integer messageId, Integer peerId, Integer timestamp, String text, JSONArray attachments, Integer randomId, JSONObject payload) {
+        this(client, messageId, peerId, timestamp, text, attachments != null && attachments.length() > 0 ? attachments.getJSONObject(0) : null, attachments != null ? attachments : new JSONArray(), randomId, payload);
+    }
+
+    private Message(Client client, Integer messageId, Integer peerId, Integer timestamp, String text, JSONObject attachments, JSONArray attachmentObjects, Integer randomId, JSONObject payload) {
 
         setMessageId(messageId);
         setPeerId(peerId);
@@ -72,6 +104,8 @@ public class Message {
         setRandomId(randomId);
         setPayload(payload);
         setTitle(attachments != null && attachments.has("title") ? attachments.getString("title") : " ... ");
+        this.attachmentObjects = attachmentObjects;
+        this.attachmentsSummary = attachmentObjects != null ? AttachmentsSummary.of(attachmentObjects) : AttachmentsSummary.of(attachments);
         this.client = client;
         api = client.api();
         upload = new Upload(client);
@@ -175,6 +209,17 @@ public class Message {
         return this;
     }
 
+    /**
+     * Priority of sending in queue of calls, NORMAL by default
+     * @param priority REALTIME for replies that user is waiting for, BULK for mailings: bulk messages of community
+     *                 with the same content are joined into one request to several peers
+     * @return this
+     */
+    public Message priority(CallAsync.Priority priority) {
+        this.priority = priority;
+        return this;
+    }
+
     /**
      * @param photo String URL, link to vk doc or path to file
      * @return this
@@ -319,50 +364,64 @@ public class Message {
 
         if (!text.isEmpty()) params.put("message", text);
         if (title != null && title.length() > 0) params.put("title", title);
-        if (randomId != null) params.put("random_id", randomId);
-        params.put("peer_id", peerId);
         if (attachments.size() > 0) params.put("attachment", String.join(",", attachments));
         if (forwardedMessages.size() > 0) params.put("forward_messages", String.join(",", forwardedMessages));
         if (stickerId != null && stickerId > 0) params.put("sticker_id", stickerId);
         if (keyboard != null) params.put("keyboard", new JSONObject(keyboard));
 
-        api.call("messages.send", params, response -> {
+        Callback<Object> onSent = response -> {
             if (callback.length > 0) {
                 callback[0].onResult(response);
             }
             if (!(response instanceof Integer)) {
                 LOG.error("Message not sent: {}", response);
             }
-        });
+        };
+
+        // Bulk messages of community with the same content are sent to several peers at once, every batch gets its own random_id
+        if (client.getToken() != null && peerId != null) {
+            if (priority == CallAsync.Priority.BULK && randomId == 0 && forwardedMessages.isEmpty()) {
+                client.sendCoalescer().send(params, peerId, priority, onSent);
+                return;
+            }
+
+            // Messages to peer that wait to be joined are sent before this one
+            client.sendCoalescer().flush(peerId, priority);
+        }
+
+        // The same random_id is kept when call is made again, so message is not duplicated
+        params.put("random_id", randomId > 0 ? randomId : Utils.randomId());
+        params.put("peer_id", peerId);
+        api.call("messages.send", params, priority, onSent);
     }
 
     /**
      * Get the type of message
      * @return type of message
      */
-    public String messageType() {
+    public MessageType messageType() {
 
         if (isVoiceMessage()) {
-            return "voiceMessage";
+            return MessageType.VOICE;
         } else if (isStickerMessage()) {
-            return "stickerMessage";
+            return MessageType.STICKER;
         } else if (isGifMessage()) {
-            return "gifMessage";
+            return MessageType.GIF;
         } else if (isAudioMessage()) {
-            return "audioMessage";
+            return MessageType.AUDIO;
         } else if (isVideoMessage()) {
-            return "videoMessage";
+            return MessageType.VIDEO;
         } else if (isDocMessage()) {
-            return "docMessage";
+            return MessageType.DOC;
         } else if (isWallMessage()) {
-            return "wallMessage";
+            return MessageType.WALL;
         } else if (isPhotoMessage()) {
-            return "photoMessage";
+            return MessageType.PHOTO;
         } else if (isLinkMessage()) {
-            return "linkMessage";
+            return MessageType.LINK;
         } else if (isSimpleTextMessage()) {
-            return "simpleTextMessage";
-        } else return "error";
+            return MessageType.SIMPLE_TEXT;
+        } else return MessageType.ERROR;
     }
 
     /**
@@ -409,10 +468,32 @@ public class Message {
 
     /**
      * Get attachments from message
+     * <p>
+     * Attachments from event are returned if they are full,
+     * otherwise they are got from VK once and cached
+     *
      * @return JSONArray attachments
      */
     public JSONArray getAttachments() {
 
+        JSONArray attachments = attachmentObjects;
+
+        if (attachments == null) {
+            attachments = getAttachmentsFromVk();
+
+            if (attachments != null) {
+                attachmentObjects = attachments;
+            }
+        }
+
+        return attachments != null ? attachments : new JSONArray();
+    }
+
+    /**
+     * @return attachments of message, or null if they were not got
+     */
+    private JSONArray getAttachmentsFromVk() {
+
         JSONObject response;
         if (isMessageFromChat()) {
             response = api.callSync("messages.getByConversationMessageId", "peer_id", chatIdLong, "conversation_message_ids", messageId, "group_id", client.getId());
@@ -424,63 +505,66 @@ public class Message {
             if (response.getJSONObject("response").getJSONArray("items").getJSONObject(0).has("attachments")) {
                 return response.getJSONObject("response").getJSONArray("items").getJSONObject(0).getJSONArray("attachments");
             }
+
+            return new JSONArray();
         }
 
-        return new JSONArray();
+        LOG.error("Can not get attachments of message {}: {}", messageId, response);
+        return null;
     }
 
     /*
      * Priority: voice, sticker, gif, ... , simple text
      */
     public boolean isPhotoMessage() {
-        return getCountOfAttachmentsByType().get("photo") > 0;
+        return attachmentsSummary.has(AttachmentsSummary.Type.PHOTO);
     }
 
     public boolean isSimpleTextMessage() {
-        return getCountOfAttachmentsByType().get("summary") == 0;
+        return attachmentsSummary.isEmpty();
     }
 
     public boolean isVoiceMessage() {
-        return getCountOfAttachmentsByType().get("voice") > 0;
+        return attachmentsSummary.has(AttachmentsSummary.Type.VOICE);
     }
 
     public boolean isAudioMessage() {
-        return getCountOfAttachmentsByType().get("audio") > 0;
+        return attachmentsSummary.has(AttachmentsSummary.Type.AUDIO);
     }
 
     public boolean isVideoMessage() {
-        return getCountOfAttachmentsByType().get("video") > 0;
+        return attachmentsSummary.has(AttachmentsSummary.Type.VIDEO);
     }
 
     public boolean isDocMessage() {
-        return getCountOfAttachmentsByType().get("doc") > 0;
+        return attachmentsSummary.has(AttachmentsSummary.Type.DOC);
     }
 
     public boolean isWallMessage() {
-        return getCountOfAttachmentsByType().get("wall") > 0;
+        return attachmentsSummary.has(AttachmentsSummary.Type.WALL);
     }
 
     public boolean isStickerMessage() {
-        return getCountOfAttachmentsByType().get("sticker") > 0;
+        return attachmentsSummary.has(AttachmentsSummary.Type.STICKER);
     }
 
     public boolean isLinkMessage() {
-        return getCountOfAttachmentsByType().get("link") > 0;
+        return attachmentsSummary.has(AttachmentsSummary.Type.LINK);
     }
 
     public boolean isGifMessage() {
-        JSONArray attachments = getAttachments();
 
-        for (Object attachment : attachments) {
-            if (attachment instanceof JSONObject) {
-                var attachmentAsJson = (JSONObject) attachment;
+        // Docs of user longpoll event have no type, so message is got from VK once
+        if (!attachmentsSummary.isDocsResolved()) {
+            JSONArray attachments = getAttachments();
 
-                if (attachmentAsJson.has("type") && attachmentAsJson.getJSONObject(attachmentAsJson.getString("type")).has("type") && attachmentAsJson.getJSONObject(attachmentAsJson.getString("type")).getInt("type") == 3)
-                    return true;
+            // Summary of event is kept if message was not got, docs are still not resolved
+            if (attachmentObjects != null) {
+                attachmentsSummary = AttachmentsSummary.of(attachments);
             }
         }
 
-        return false;
+        return attachmentsSummary.has(AttachmentsSummary.Type.GIF);
     }
 
     // Getters and setters for handling new message
@@ -488,79 +572,17 @@ public class Message {
     /**
      * Method helps to identify kind of message
      *
-     * @return Map: key=type of attachment, value=count of attachments, key=summary - value=count of all attachments.
+     * @return Map: key=type of attachment, value=count of attachments, key=summary - value=count of types of attachments.
      */
     public Map<String, Integer> getCountOfAttachmentsByType() {
+        return attachmentsSummary.toMap();
+    }
 
-        int photo = 0, video = 0, audio = 0, doc = 0, wall = 0, link = 0;
-
-        Map<String, Integer> answer = new HashMap<>() {{
-            put("photo", 0);
-            put("video", 0);
-            put("audio", 0);
-            put("doc", 0);
-            put("wall", 0);
-            put("sticker", 0);
-            put("link", 0);
-            put("voice", 0);
-            put("summary", 0);
-        }};
-
-        if (attachmentsOfReceivedMessage.toString().contains("sticker")) {
-            answer.put("sticker", 1);
-            answer.put("summary", 1);
-            return answer;
-        } else {
-            if (attachmentsOfReceivedMessage.toString().contains("audiomsg")) {
-                answer.put("voice", 1);
-                answer.put("summary", 1);
-                return answer;
-            } else {
-                for (String key : attachmentsOfReceivedMessage.keySet()) {
-                    if (key.equals("type")) {
-
-                        String value = attachmentsOfReceivedMessage.getString(key);
-                        switch (value) {
-
-                            case "photo": {
-                                answer.put(value, ++photo);
-                                break;
-                            }
-                            case "video": {
-                                answer.put(value, ++video);
-                                break;
-                            }
-                            case "audio": {
-                                answer.put(value, ++audio);
-                                break;
-                            }
-                            case "doc": {
-                                answer.put(value, ++doc);
-                                break;
-                            }
-                            case "wall": {
-                                answer.put(value, ++wall);
-                                break;
-                            }
-                            case "link": {
-                                answer.put(value, ++link);
-                                break;
-                            }
-                        }
-                    }
-
-                }
-            }
-        }
-
-        int summary = 0;
-        for (String key : answer.keySet()) {
-            if (answer.get(key) > 0)
-                summary++;
-        }
-        answer.put("summary", summary);
-
-        return answer;
+    /**
+     * @return types and counts of attachments of received message
+     */
+    public AttachmentsSummary getAttachmentsSummary() {
+        return attachmentsSummary;
     }
 
     /* Public getters */
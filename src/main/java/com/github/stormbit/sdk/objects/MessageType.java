@@ -0,0 +1,33 @@
+package com.github.stormbit.sdk.objects;
+
+/**
+ * Kinds of received messages
+ * <p>
+ * Priority: voice, sticker, gif, ... , simple text
+ */
+public enum MessageType {
+    VOICE("voiceMessage"),
+    STICKER("stickerMessage"),
+    GIF("gifMessage"),
+    AUDIO("audioMessage"),
+    VIDEO("videoMessage"),
+    DOC("docMessage"),
+    WALL("wallMessage"),
+    PHOTO("photoMessage"),
+    LINK("linkMessage"),
+    SIMPLE_TEXT("simpleTextMessage"),
+    ERROR("error");
+
+    private final String type;
+
+    MessageType(String type) {
+        this.type = type;
+    }
+
+    /**
+     * @return name of type that was used before: voiceMessage, stickerMessage, ...
+     */
+    public String getType() {
+        return type;
+    }
+}
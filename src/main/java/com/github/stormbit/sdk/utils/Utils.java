@@ -12,10 +12,18 @@ import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -351,11 +359,56 @@ public class Utils {
         return response.getInt("id");
     }
 
+    /**
+     * 'random_id' of 'messages.send': VK does not send message again if it has the same random_id,
+     * so message that is sent again after network error is not duplicated
+     *
+     * @return random positive id
+     */
+    public static int randomId() {
+        return ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE);
+    }
+
     public static String getMimeType(byte[] bytes) throws IOException {
         InputStream is = new BufferedInputStream(new ByteArrayInputStream(bytes));
         String mimeType = URLConnection.guessContentTypeFromStream(is);
+
+        if (mimeType == null) {
+            throw new IOException("Unknown type of file");
+        }
+
         mimeType = mimeType.substring(mimeType.lastIndexOf('/') + 1).replace("jpeg", "jpg");
 
         return mimeType;
     }
+
+    /**
+     * Write file so it always contains either old or new data, even if process is killed while writing:
+     * data is written to temporary file, synced to disk and renamed to target file
+     *
+     * @param file Target file
+     * @param data New content
+     */
+    public static void writeAtomically(Path file, byte[] data) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
 }
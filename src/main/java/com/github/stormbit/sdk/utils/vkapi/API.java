@@ -2,6 +2,8 @@ package com.github.stormbit.sdk.utils.vkapi;
 
 import com.github.stormbit.sdk.callbacks.Callback;
 import com.github.stormbit.sdk.clients.Client;
+import com.github.stormbit.sdk.exceptions.VkApiException;
+import com.github.stormbit.sdk.utils.Utils;
 import com.github.stormbit.sdk.utils.vkapi.calls.CallAsync;
 import com.github.stormbit.sdk.utils.vkapi.calls.CallSync;
 import org.json.JSONArray;
@@ -11,6 +13,9 @@ import org.slf4j.LoggerFactory;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Created by PeterSamokhin on 28/09/2017 21:59
@@ -60,6 +65,244 @@ public abstract class API {
      */
     public abstract void call(Callback<Object> callback, String method, Object... params);
 
+    /**
+     * Call to VK API with priority
+     *
+     * @param method   Method name
+     * @param params   Params as string, JSONObject or Map
+     * @param priority Priority of call in queue, for example REALTIME for replies and BULK for mailings
+     * @param callback Callback to return the response
+     */
+    public void call(String method, Object params, CallAsync.Priority priority, Callback<Object> callback) {
+
+        try {
+            JSONObject parameters = parseParams(params);
+
+            if (parameters != null) {
+                executor.execute(new CallAsync(method, parameters, priority, callback, null));
+            }
+        } catch (Exception e) {
+            LOG.error("Some error occurred when calling VK API method {} with params {}, error is {}", method, params, e.getMessage());
+        }
+    }
+
+    /**
+     * Call to VK API
+     * <p>
+     * Call will be executed with other calls from queue,
+     * and future will be completed with JSONObject {"response": ...}, as returned by callSync,
+     * or completed exceptionally with {@link VkApiException} if VK returned error.
+     *
+     * @param method Method name
+     * @param params Params as string, JSONObject or Map
+     * @return future of VK answer
+     */
+    public CompletableFuture<JSONObject> callAsync(String method, Object params) {
+        return callAsync(method, params, CallAsync.Priority.NORMAL);
+    }
+
+    /**
+     * Call to VK API with priority
+     *
+     * @param method   Method name
+     * @param params   Params as string, JSONObject or Map
+     * @param priority Priority of call in queue
+     * @return future of VK answer
+     * @see #callAsync(String, Object)
+     */
+    public CompletableFuture<JSONObject> callAsync(String method, Object params, CallAsync.Priority priority) {
+
+        CompletableFuture<JSONObject> future = new CompletableFuture<>();
+
+        JSONObject parameters;
+
+        try {
+            parameters = parseParams(params);
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        if (parameters == null) {
+            future.completeExceptionally(new IllegalArgumentException("Bad params of method " + method + ": " + params));
+            return future;
+        }
+
+        executor.execute(new CallAsync(method, parameters, priority,
+                response -> future.complete(new JSONObject().put("response", response)),
+                future::completeExceptionally
+        ));
+
+        return future;
+    }
+
+    /**
+     * Call to VK API
+     *
+     * @param method Method name
+     * @param params Floating count of params
+     * @return future of VK answer
+     * @see #callAsync(String, Object)
+     */
+    public CompletableFuture<JSONObject> callAsync(String method, Object... params) {
+
+        if (params != null) {
+            if (params.length == 1) {
+                return this.callAsync(method, params[0]);
+            }
+
+            if (params.length > 1 && params.length % 2 == 0) {
+                Map<String, Object> map = new HashMap<>();
+
+                for (int i = 0; i < params.length - 1; i += 2) {
+                    map.put(params[i].toString(), params[i + 1]);
+                }
+
+                return this.callAsync(method, map);
+            }
+        }
+
+        return this.callAsync(method, new HashMap<String, Object>());
+    }
+
+    /**
+     * Make params of call from string, JSONObject or Map
+     *
+     * @param params Params as string, JSONObject or Map
+     * @return params or null if params are bad
+     */
+    @SuppressWarnings("unchecked")
+    protected JSONObject parseParams(Object params) {
+
+        // Work with map
+        if (params instanceof Map) {
+            return new JSONObject((Map) params);
+        }
+
+        // with JO
+        if (params instanceof JSONObject) {
+            return (JSONObject) params;
+        }
+
+        // or string
+        if (params instanceof String) {
+            String s = params.toString();
+            if (s.startsWith("{")) {
+                return new JSONObject(s);
+            } else {
+                if (s.contains("&") && s.contains("=")) {
+                    return Utils.explodeQuery(s);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Request of sync call
+     */
+    @FunctionalInterface
+    protected interface SyncRequest {
+
+        /**
+         * @param token Token which permit was taken for this request
+         * @return VK answer
+         */
+        JSONObject send(TokenPool.Token token) throws Exception;
+    }
+
+    /**
+     * Make request, and make it again after delay of retry policy of executor while it fails
+     * with network error, bad response or VK error that policy retries.
+     * After network error and bad response request is made again only if call can be run twice.
+     * Every attempt takes permit of tokens of executor, so sync and async calls share one limit of requests.
+     *
+     * @param method  Method name
+     * @param params  Params as string, JSONObject or Map
+     * @param request Request that returns VK answer
+     * @return VK answer, or {"error": {error_code, error_msg, method}} if request failed
+     * @see RetryPolicy
+     */
+    protected JSONObject withRetries(String method, Object params, SyncRequest request) {
+
+        RetryPolicy policy = executor.getRetryPolicy();
+        TokenPool tokens = executor.getTokens();
+
+        boolean repeatable;
+
+        try {
+            repeatable = policy.isRepeatable(method, parseParams(params));
+        } catch (Exception e) {
+            repeatable = false;
+        }
+
+        for (int failed = 1; ; failed++) {
+            JSONObject response = null;
+            VkApiException error;
+            TokenPool.Token token;
+
+            try {
+                token = tokens.acquireBlocking();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return errorResponse(new VkApiException(VkApiException.UNKNOWN, "Interrupted while waiting for permit of token", method));
+            }
+
+            try {
+                response = request.send(token);
+
+                if (!response.has("error")) {
+                    token.getLimiter().onSuccess();
+                    return response;
+                }
+
+                error = new VkApiException(response.getJSONObject("error"), method);
+
+                if (error.getCode() == VkApiException.TOO_MANY_REQUESTS) {
+                    token.getLimiter().onTooManyRequests();
+                } else {
+                    token.getLimiter().onSuccess();
+                }
+            } catch (Exception e) {
+                error = VkApiException.from(e, method);
+            }
+
+            // Errors of token are retried only with other tokens
+            long delay = Executor.isTokenError(error.getCode())
+                    ? (tokens.evict(token, error.getMessage()) ? 0 : -1)
+                    : policy.delayMillis(error.getCode(), failed, repeatable);
+
+            if (delay >= 0) {
+                try {
+                    Thread.sleep(delay);
+                    continue;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            LOG.error("Some error occurred when calling VK API: {}", error);
+
+            return response != null ? response : errorResponse(error);
+        }
+    }
+
+    /**
+     * @param error Error of call
+     * @return answer in format of VK: {"error": {error_code, error_msg, method}}
+     */
+    protected static JSONObject errorResponse(VkApiException error) {
+        return new JSONObject().put("error", error.toJSON());
+    }
+
+    /**
+     * @return executor of calls of this API
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
     /**
      * Call to 'execute' method, because can not call API.execute inside execute.
      * More: <a href="https://vk.com/dev/execute">link</a>;
@@ -123,10 +366,12 @@ public abstract class API {
 
     /**
      * Call to VK API
+     * <p>
+     * Call is made again after errors 6, 9, 10, and after network errors if it can be run twice, see {@link RetryPolicy}.
      *
      * @param method Method name
      * @param params Params as string, JSONObject or Map
-     * @return JSONObject response of VK answer
+     * @return JSONObject response of VK answer, or {"error": {error_code, error_msg, method}} if call failed
      */
     public abstract JSONObject callSync(String method, Object params);
 
@@ -157,6 +157,10 @@ public class Auth {
         );
     }
 
+    public String getLogin() {
+        return _login;
+    }
+
     public abstract static class Listener {
         public abstract Pair<String, Boolean> two_factor();
     }
@@ -0,0 +1,614 @@
+package com.github.stormbit.sdk.utils.vkapi;
+
+import com.github.stormbit.sdk.callbacks.Callback;
+import com.github.stormbit.sdk.callbacks.CallbackDouble;
+import com.github.stormbit.sdk.clients.Client;
+import com.github.stormbit.sdk.exceptions.VkApiException;
+import com.github.stormbit.sdk.utils.Utils;
+import com.github.stormbit.sdk.utils.vkapi.calls.CallAsync;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mailing of one message to many recipients
+ * <p>
+ * Recipients are taken from iterator (file, cursor of database, stream) by batches,
+ * and every batch is sent by one 'messages.send' with 'peer_ids'.
+ * Broadcast sends not more than its share of requests per second of tokens,
+ * and its calls have bulk priority, so replies to users are sent without waiting for the whole mailing.
+ * <p>
+ * Progress is saved to file after every batch, and started again broadcast skips
+ * recipients that were already handled, so iterator must return recipients in the same order.
+ * Every batch has its own 'random_id', so batch that is sent again after network error is not duplicated,
+ * but batches that were sending when process was stopped are sent again with new ones.
+ * <p>
+ * Batch that got no answer of VK (network error, queue of calls is full, runtime of client is stopped)
+ * stops the broadcast and is not saved to progress, so it is sent again at the next start.
+ * <p>
+ * Only community tokens can send to several peers at once, user account sends to one peer per request.
+ * More: <a href="https://vk.com/dev/messages.send">link</a>
+ */
+@SuppressWarnings("unused")
+public class Broadcast {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Broadcast.class);
+
+    /**
+     * Default share of requests per second of tokens
+     */
+    public static double DEFAULT_SHARE = 0.25;
+
+    /**
+     * Max count of batches that are sending at once
+     */
+    private static final int MAX_IN_FLIGHT = 4;
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final Client client;
+    private final JSONObject params;
+    private final Iterator<Integer> recipients;
+    private final int batchSize;
+
+    private double share = DEFAULT_SHARE;
+    private Path progressFile = null;
+    private CallbackDouble<Integer, Object> resultCallback = null;
+    private Callback<Broadcast> finishCallback = null;
+
+    /**
+     * Count of recipients taken from iterator
+     */
+    private long read = 0;
+
+    /**
+     * Count of recipients from the start of iterator, results of which are known
+     */
+    private long offset = 0;
+
+    /**
+     * Sizes of handled batches by their offsets, that are handled before some previous batches
+     */
+    private final Map<Long, Batch> handledBatches = new HashMap<>();
+
+    /**
+     * Batches that got no answer, they are sent again before new recipients
+     */
+    private final Deque<Batch> unsent = new ArrayDeque<>();
+
+    private long sent = 0;
+    private long failed = 0;
+
+    /**
+     * Counts of recipients before offset, they are saved to progress
+     */
+    private long savedSent = 0;
+    private long savedFailed = 0;
+
+    private int inFlight = 0;
+    private long nextSendAt = 0;
+    private boolean running = false;
+    private boolean waiting = false;
+    private boolean loaded = false;
+    private boolean exhausted = false;
+    private boolean finished = false;
+
+    private final Object checkpointLock = new Object();
+
+    /**
+     * @param client     Client that sends messages
+     * @param params     Params of 'messages.send' without 'peer_id': message, attachment, keyboard, ...
+     * @param recipients Peers in the same order at every start
+     */
+    public Broadcast(Client client, JSONObject params, Iterator<Integer> recipients) {
+        this.client = client;
+        this.params = new JSONObject(params.toString());
+        this.recipients = recipients;
+        this.batchSize = client.getToken() != null ? SendCoalescer.MAX_PEERS : 1;
+
+        this.params.remove("peer_id");
+        this.params.remove("peer_ids");
+        this.params.remove("user_id");
+        this.params.remove("user_ids");
+    }
+
+    /**
+     * @param share Part of requests per second of tokens, from 0 to 1
+     * @return this
+     */
+    public Broadcast share(double share) {
+        if (share <= 0 || share > 1) {
+            throw new IllegalArgumentException("Share of requests must be from 0 to 1: " + share);
+        }
+
+        this.share = share;
+        return this;
+    }
+
+    /**
+     * @param file File with progress of broadcast, broadcast is continued from it at start
+     * @return this
+     */
+    public Broadcast progress(Path file) {
+        this.progressFile = file.toAbsolutePath();
+        return this;
+    }
+
+    /**
+     * @param callback Recipient and message id, or 'false' if message was not sent
+     * @return this
+     */
+    public Broadcast onResult(CallbackDouble<Integer, Object> callback) {
+        this.resultCallback = callback;
+        return this;
+    }
+
+    /**
+     * @param callback Called when all recipients are handled
+     * @return this
+     */
+    public Broadcast onFinish(Callback<Broadcast> callback) {
+        this.finishCallback = callback;
+        return this;
+    }
+
+    /**
+     * Start or continue sending
+     */
+    public void start() {
+        synchronized (this) {
+            if (running || finished) {
+                return;
+            }
+
+            running = true;
+        }
+
+        try {
+            client.runtime().service().execute(() -> {
+                if (!load()) {
+                    stop();
+                    return;
+                }
+
+                pump();
+            });
+        } catch (RejectedExecutionException e) {
+            LOG.error("Broadcast is not started, pool of client is full or stopped");
+            stop();
+        }
+    }
+
+    /**
+     * Stop taking new recipients, batches that are sending now are handled and saved to progress
+     */
+    public void stop() {
+        synchronized (this) {
+            running = false;
+        }
+
+        checkpoint();
+    }
+
+    /**
+     * Skip recipients that are saved to progress file
+     *
+     * @return false if iterator has less recipients than saved
+     */
+    private synchronized boolean load() {
+        if (loaded) {
+            return true;
+        }
+
+        if (progressFile != null && Files.exists(progressFile)) {
+            JSONObject progress;
+
+            try {
+                progress = new JSONObject(new String(Files.readAllBytes(progressFile), StandardCharsets.UTF_8));
+            } catch (IOException | JSONException e) {
+                LOG.error("Can't read progress of broadcast from {}: {}", progressFile, e.toString());
+                return false;
+            }
+
+            long skip = progress.optLong("offset");
+
+            try {
+                while (read < skip && recipients.hasNext()) {
+                    recipients.next();
+                    read++;
+                }
+            } catch (RuntimeException e) {
+                LOG.error("Can't skip sent recipients of broadcast: {}", e.toString());
+                return false;
+            }
+
+            if (read < skip) {
+                LOG.error("Only {} recipients of broadcast are found, but {} are already handled", read, skip);
+                return false;
+            }
+
+            offset = read;
+            sent = savedSent = progress.optLong("sent");
+            failed = savedFailed = progress.optLong("failed");
+        }
+
+        loaded = true;
+        return true;
+    }
+
+    /**
+     * Send the next batch if broadcast does not exceed its share of requests,
+     * or wait for the time of the next batch
+     */
+    private void pump() {
+        Batch batch;
+
+        synchronized (this) {
+            if (!running || waiting || (exhausted && unsent.isEmpty()) || inFlight >= MAX_IN_FLIGHT) {
+                return;
+            }
+
+            long now = System.nanoTime();
+            long wait = nextSendAt - now;
+
+            if (wait > 0) {
+                waiting = true;
+
+                try {
+                    client.runtime().scheduler().schedule(() -> {
+                        synchronized (this) {
+                            waiting = false;
+                        }
+                        pump();
+                    }, wait, TimeUnit.NANOSECONDS);
+                } catch (RejectedExecutionException e) {
+                    LOG.error("Runtime of client is stopped, broadcast is stopped");
+                    waiting = false;
+                    running = false;
+                }
+                return;
+            }
+
+            // Batches without answer are sent before new recipients
+            batch = unsent.poll();
+
+            if (batch == null && !exhausted) {
+                List<Integer> peers = new ArrayList<>(batchSize);
+                int count = 0;
+
+                try {
+                    while (count < batchSize && recipients.hasNext()) {
+                        Integer peer = recipients.next();
+                        count++;
+
+                        if (peer != null) {
+                            peers.add(peer);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    LOG.error("Can't read recipients of broadcast, broadcast is stopped: {}", e.toString());
+                    running = false;
+                    return;
+                }
+
+                if (count == 0) {
+                    exhausted = true;
+                } else {
+                    batch = new Batch(read, count, peers);
+                    read += count;
+                }
+            }
+
+            if (batch != null) {
+                inFlight++;
+                nextSendAt = now + interval();
+            }
+        }
+
+        if (batch == null) {
+            finishIfDone();
+            return;
+        }
+
+        send(batch);
+        pump();
+    }
+
+    /**
+     * @return nanoseconds between batches
+     */
+    private long interval() {
+        double rate = share * client.api().getExecutor().getTokens().rate();
+
+        return rate > 0 ? (long) (SECOND / rate) : SECOND;
+    }
+
+    private void send(Batch batch) {
+        List<Integer> peers = batch.peers;
+
+        if (peers.isEmpty()) {
+            handled(batch, Collections.emptyMap());
+            return;
+        }
+
+        if (batch.params == null) {
+            JSONObject params = new JSONObject(this.params.toString());
+
+            // The same random_id is kept when call is made again, so messages are not duplicated
+            if (!params.has("random_id")) {
+                params.put("random_id", Utils.randomId());
+            }
+
+            if (batchSize == 1) {
+                params.put("peer_id", peers.get(0));
+            } else {
+                StringBuilder peerIds = new StringBuilder();
+
+                for (Integer peer : peers) {
+                    if (peerIds.length() > 0) peerIds.append(',');
+                    peerIds.append(peer);
+                }
+
+                params.put("peer_ids", peerIds.toString());
+            }
+
+            batch.params = params;
+        }
+
+        client.api().callAsync("messages.send", batch.params, CallAsync.Priority.BULK).whenComplete((response, error) -> {
+            Map<Integer, Object> results;
+
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+
+                // VK did not answer, so it is not known if messages are sent
+                if (!(cause instanceof VkApiException) || ((VkApiException) cause).getCode() <= 0) {
+                    notSent(batch, cause);
+                    return;
+                }
+
+                LOG.error("Messages of broadcast to peers {} not sent: {}", peers, cause.toString());
+                results = Collections.emptyMap();
+            } else if (batchSize == 1) {
+                results = Collections.singletonMap(peers.get(0), response.get("response"));
+            } else {
+                results = SendCoalescer.results(response.get("response"));
+            }
+
+            handled(batch, results);
+        });
+    }
+
+    /**
+     * Stop broadcast without saving of batch to progress, so it is sent again at the next start
+     */
+    private void notSent(Batch batch, Throwable error) {
+        LOG.error("Messages of broadcast to peers {} got no answer, broadcast is stopped: {}", batch.peers, error.toString());
+
+        synchronized (this) {
+            unsent.add(batch);
+            inFlight--;
+        }
+
+        stop();
+    }
+
+    /**
+     * Save results of batch and send the next one
+     */
+    private void handled(Batch batch, Map<Integer, Object> results) {
+        for (Integer peer : batch.peers) {
+            Object result = results.getOrDefault(peer, "false");
+
+            synchronized (this) {
+                if ("false".equals(result)) {
+                    failed++;
+                    batch.failed++;
+                } else {
+                    sent++;
+                    batch.sent++;
+                }
+            }
+
+            if (resultCallback != null) {
+                try {
+                    resultCallback.onEvent(peer, result);
+                } catch (Exception e) {
+                    LOG.error("Some error occurred when handling result of broadcast to {}: {}", peer, e.toString());
+                }
+            }
+        }
+
+        synchronized (this) {
+            handledBatches.put(batch.start, batch);
+
+            Batch next;
+            while ((next = handledBatches.remove(offset)) != null) {
+                offset += next.count;
+                savedSent += next.sent;
+                savedFailed += next.failed;
+            }
+
+            inFlight--;
+        }
+
+        checkpoint();
+        pump();
+        finishIfDone();
+    }
+
+    private void finishIfDone() {
+        synchronized (this) {
+            if (finished || !exhausted || inFlight > 0 || !unsent.isEmpty()) {
+                return;
+            }
+
+            finished = true;
+            running = false;
+        }
+
+        checkpoint();
+
+        LOG.info("Broadcast is finished: {} messages sent, {} not sent", getSent(), getFailed());
+
+        if (finishCallback != null) {
+            finishCallback.onResult(this);
+        }
+    }
+
+    /**
+     * Write progress to file
+     */
+    private void checkpoint() {
+        if (progressFile == null) {
+            return;
+        }
+
+        synchronized (checkpointLock) {
+            JSONObject progress = new JSONObject();
+
+            synchronized (this) {
+                if (!loaded) {
+                    return;
+                }
+
+                progress.put("offset", offset).put("sent", savedSent).put("failed", savedFailed).put("finished", finished);
+            }
+
+            try {
+                Utils.writeAtomically(progressFile, progress.toString().getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                LOG.error("Can't write progress of broadcast to {}: {}", progressFile, e.toString());
+            }
+        }
+    }
+
+    /**
+     * Recipients that are taken from iterator at once and sent by one call
+     */
+    private static final class Batch {
+        private final long start;
+        private final int count;
+        private final List<Integer> peers;
+
+        /**
+         * Params of call with 'random_id', they are kept when batch is sent again
+         */
+        private JSONObject params = null;
+
+        private int sent = 0;
+        private int failed = 0;
+
+        private Batch(long start, int count, List<Integer> peers) {
+            this.start = start;
+            this.count = count;
+            this.peers = peers;
+        }
+    }
+
+    /**
+     * Recipients from text file, one peer id per line, empty lines are skipped.
+     * File is closed when all lines are read.
+     *
+     * @param file File with peer ids
+     * @return iterator of peer ids
+     */
+    public static Iterator<Integer> fromFile(Path file) throws IOException {
+        BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+
+        return new Iterator<Integer>() {
+            private Integer next = null;
+            private boolean closed = false;
+
+            @Override
+            public boolean hasNext() {
+                if (next != null) {
+                    return true;
+                }
+
+                if (closed) {
+                    return false;
+                }
+
+                try {
+                    String line;
+
+                    while ((line = reader.readLine()) != null) {
+                        line = line.trim();
+
+                        if (!line.isEmpty()) {
+                            next = Integer.valueOf(line);
+                            return true;
+                        }
+                    }
+
+                    closed = true;
+                    reader.close();
+                    return false;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public Integer next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                Integer peer = next;
+                next = null;
+                return peer;
+            }
+        };
+    }
+
+    /**
+     * @return count of recipients that got message
+     */
+    public synchronized long getSent() {
+        return sent;
+    }
+
+    /**
+     * @return count of recipients that did not get message
+     */
+    public synchronized long getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return count of recipients from the start, results of which are known
+     */
+    public synchronized long getOffset() {
+        return offset;
+    }
+
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+}
@@ -1,15 +1,25 @@
 package com.github.stormbit.sdk.utils.vkapi;
 
-import com.github.stormbit.sdk.clients.Client;
+import com.github.stormbit.sdk.clients.ClientRuntime;
+import com.github.stormbit.sdk.exceptions.VkApiException;
 import com.github.stormbit.sdk.utils.vkapi.calls.Call;
 import com.github.stormbit.sdk.utils.vkapi.calls.CallAsync;
+import com.github.stormbit.sdk.utils.vkapi.calls.CallQueue;
 import com.github.stormbit.sdk.utils.vkapi.calls.CallSync;
+import com.github.stormbit.sdk.utils.vkapi.calls.PriorityCallQueue;
+import org.json.JSONArray;
+import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Created by PeterSamokhin on 28/09/2017 21:59
@@ -27,30 +37,130 @@ public abstract class Executor {
     public static boolean LOG_REQUESTS = false;
 
     /**
-     * We can call 'execute' method no more than three times per second.
-     * 1000/3 ~ 333 milliseconds
+     * Max count of calls of one priority waiting in queue of every new executor
      */
-    private static final int delay = 335;
+    public static int QUEUE_CAPACITY = 16384;
 
     /**
-     * Queue of requests
+     * What to do with new calls when queue of new executor is full
      */
-    protected volatile List<CallAsync> queue = new ArrayList<>();
+    public static CallQueue.Overflow QUEUE_OVERFLOW = CallQueue.Overflow.BLOCK;
+
+    /**
+     * Max count of calls in one 'execute' request
+     */
+    protected static final int MAX_CALLS = 25;
+
+    /**
+     * Queue of requests with lane for every priority
+     */
+    protected final PriorityCallQueue queue = new PriorityCallQueue(QUEUE_CAPACITY, QUEUE_OVERFLOW);
 
     protected final Auth _auth;
 
+    /**
+     * Tokens with their requests per second
+     */
+    protected final TokenPool tokens;
+
+    /**
+     * Which failed calls are sent again
+     */
+    protected volatile RetryPolicy retryPolicy = RetryPolicy.getDefault();
+
+    /**
+     * Thread pools of client
+     */
+    protected final ClientRuntime runtime;
+
+    /**
+     * True while queue is draining or draining is waiting for a permit
+     */
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+
+    /**
+     * Failed calls that wait in scheduler for the next attempt.
+     * Calls are compared by identity: equal calls with the same callback are still different calls.
+     */
+    private final Set<CallAsync> retrying = Collections.newSetFromMap(Collections.synchronizedMap(new IdentityHashMap<>()));
+
+    /**
+     * True when runtime is stopped, new calls get errors at once
+     */
+    private volatile boolean closed = false;
+
 
-    public Executor(Auth auth) {
+    public Executor(Auth auth, TokenPool tokens, ClientRuntime runtime) {
         _auth = auth;
+        this.tokens = tokens;
+        this.runtime = runtime;
 
-        Client.scheduler.scheduleWithFixedDelay(this::executing, 0, delay, TimeUnit.MILLISECONDS);
+        runtime.onShutdown(this::close);
+    }
+
+    /**
+     * Method that makes 'execute' request
+     * with up to 25 calls from queue.
+     *
+     * @param calls Calls to be executed
+     * @param token Token which permit was taken for this request
+     */
+    protected abstract void executing(List<CallAsync> calls, TokenPool.Token token);
+
+    /**
+     * Start draining of queue if it is not started yet
+     */
+    protected void startDraining() {
+        if (!queue.isEmpty() && draining.compareAndSet(false, true)) {
+            try {
+                runtime.scheduler().execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+                close();
+            }
+        }
     }
 
     /**
-     * Method that makes 'execute' requests
-     * with first 25 calls from queue.
+     * Sends batches while there are calls in queue and free permits,
+     * and waits for the next permit otherwise.
      */
-    protected abstract void executing();
+    private void drain() {
+        try {
+            while (!queue.isEmpty()) {
+                TokenPool.Token token = tokens.acquire();
+
+                if (token == null) {
+                    runtime.scheduler().schedule(this::drain, tokens.nextPermitIn(), TimeUnit.NANOSECONDS);
+                    return;
+                }
+
+                List<CallAsync> calls = new ArrayList<>(MAX_CALLS);
+
+                if (queue.drainTo(calls, MAX_CALLS) > 0) {
+                    try {
+                        runtime.requests().execute(() -> {
+                            try {
+                                executing(calls, token);
+                            } catch (Exception e) {
+                                LOG.error("Some error occurred when executing calls {}: {}", calls, e.toString());
+                                calls.forEach(call -> retryOrFail(call, VkApiException.from(e, call.getMethodName())));
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        // Requests are not run in this thread, it must only drain queue
+                        LOG.error("Pool of client is stopped, calls rejected: {}", calls);
+                        calls.forEach(call -> fail(call, stopped(call)));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            LOG.error("Some error occurred when draining queue of calls: {}", e.toString());
+        }
+
+        draining.set(false);
+        startDraining();
+    }
 
     /**
      * Method that makes string in json format from call object.
@@ -66,12 +176,302 @@ public abstract class Executor {
         return "API." + call.getMethodName() + '(' + call.getParams().toString() + ')';
     }
 
+    /**
+     * Method that makes VKScript code for 'execute' from calls.
+     *
+     * @param calls Calls to be executed, up to 25
+     * @return String 'return [API.method.name({param:value}),...];'
+     */
+    protected String codeForExecute(List<CallAsync> calls) {
+
+        StringBuilder code = new StringBuilder("return [");
+
+        for (int i = 0; i < calls.size(); i++) {
+            code.append(codeForExecute(calls.get(i)));
+            if (i < calls.size() - 1) {
+                code.append(',');
+            }
+        }
+        code.append("];");
+
+        return code.toString();
+    }
+
+    /**
+     * Method that returns to every call its own slot
+     * of 'execute' response.
+     * <p>
+     * Failed calls have 'false' in their slot, and errors are placed
+     * to 'execute_errors' in the same order as failed calls,
+     * so every failed call gets its own error.
+     * Failed calls are put to queue again if retry policy allows it, others get their errors.
+     * Calls with errors of token (5, 29) are sent again only if token was evicted and other tokens can be used.
+     *
+     * @param calls    Executed calls
+     * @param response VK response of 'execute'
+     * @param token    Token of request
+     */
+    protected void handleResponses(List<CallAsync> calls, JSONObject response, TokenPool.Token token) {
+
+        if (response.has("error")) {
+            int code = response.getJSONObject("error").optInt("error_code");
+
+            if (code == VkApiException.TOO_MANY_REQUESTS) {
+                token.getLimiter().onTooManyRequests();
+            }
+
+            // Calls are sent again with other tokens, if there are any
+            if (isTokenError(code)) {
+                JSONObject error = response.getJSONObject("error");
+                boolean evicted = tokens.evict(token, error.optString("error_msg"));
+
+                for (CallAsync call : calls) {
+                    if (evicted) {
+                        retryOrFail(call, new VkApiException(error, call.getMethodName()));
+                    } else {
+                        fail(call, new VkApiException(error, call.getMethodName()));
+                    }
+                }
+                return;
+            }
+        }
+
+        if (!response.has("response") || !(response.get("response") instanceof JSONArray)) {
+            LOG.error("No 'response' array when executing code, VK response: {}", response);
+            JSONObject error = response.optJSONObject("error");
+            calls.forEach(call -> retryOrFail(call, error != null
+                    ? new VkApiException(error, call.getMethodName())
+                    : new VkApiException(VkApiException.BAD_RESPONSE, "Bad response: " + response, call.getMethodName())));
+            return;
+        }
+
+        JSONArray responses = response.getJSONArray("response");
+        JSONArray errors = response.optJSONArray("execute_errors");
+
+        int errorIndex = 0;
+        boolean tooManyRequests = false;
+        JSONObject tokenError = null;
+
+        // Calls that got error of token are sent again with other tokens, if there are any
+        List<CallAsync> tokenErrorCalls = new ArrayList<>();
+        List<VkApiException> tokenErrors = new ArrayList<>();
+
+        for (int i = 0; i < calls.size(); i++) {
+            CallAsync call = calls.get(i);
+            Object result = i < responses.length() ? responses.get(i) : false;
+
+            if (Boolean.FALSE.equals(result)) {
+                JSONObject error = errors != null && errorIndex < errors.length() ? errors.optJSONObject(errorIndex++) : null;
+                LOG.error("Error when executing method {} with params {}: {}", call.getMethodName(), call.getParams(), error);
+
+                if (error != null && error.optInt("error_code") == VkApiException.TOO_MANY_REQUESTS) {
+                    tooManyRequests = true;
+                }
+
+                if (error != null && isTokenError(error.optInt("error_code"))) {
+                    tokenError = error;
+                    tokenErrorCalls.add(call);
+                    tokenErrors.add(new VkApiException(error, call.getMethodName()));
+                    continue;
+                }
+
+                retryOrFail(call, error != null
+                        ? new VkApiException(error, call.getMethodName())
+                        : new VkApiException(VkApiException.UNKNOWN, "Method returned false", call.getMethodName()));
+            } else {
+                respond(call, result);
+            }
+        }
+
+        if (tooManyRequests) {
+            token.getLimiter().onTooManyRequests();
+        } else {
+            token.getLimiter().onSuccess();
+        }
+
+        if (tokenError != null) {
+            boolean evicted = tokens.evict(token, tokenError.optString("error_msg"));
+
+            for (int i = 0; i < tokenErrorCalls.size(); i++) {
+                if (evicted) {
+                    retryOrFail(tokenErrorCalls.get(i), tokenErrors.get(i));
+                } else {
+                    fail(tokenErrorCalls.get(i), tokenErrors.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Put failed call to queue again after delay of retry policy,
+     * or return error to call if it must not be sent again
+     *
+     * @param call  Failed call
+     * @param error Error of call
+     */
+    protected void retryOrFail(CallAsync call, VkApiException error) {
+        boolean repeatable = call.isRepeatable() || retryPolicy.isRepeatable(call.getMethodName(), call.getParams());
+        long delay = retryPolicy.delayMillis(error.getCode(), call.onFailedAttempt(), repeatable);
+
+        if (delay < 0) {
+            fail(call, error);
+            return;
+        }
+
+        retrying.add(call);
+
+        try {
+            runtime.scheduler().schedule(() -> {
+                if (!retrying.remove(call)) {
+                    return;
+                }
+
+                try {
+                    runtime.requests().execute(() -> execute(call));
+                } catch (RejectedExecutionException e) {
+                    fail(call, error);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            if (retrying.remove(call)) {
+                fail(call, error);
+            }
+        }
+    }
+
+    /**
+     * Return result to callback of call in pool of callbacks,
+     * so pool of requests is not blocked by callbacks that make sync calls or uploads
+     *
+     * @param call   Call
+     * @param result Result of call
+     */
+    protected void respond(CallAsync call, Object result) {
+        dispatch(() -> call.onResult(result));
+    }
+
+    /**
+     * Return error to callback of call in pool of callbacks
+     *
+     * @param call  Call
+     * @param error Error of call
+     */
+    protected void fail(CallAsync call, VkApiException error) {
+        dispatch(() -> call.onError(error));
+    }
+
+    /**
+     * Callback is run in this thread if pool of callbacks is full or stopped, so it is not lost
+     */
+    private void dispatch(Runnable callback) {
+        try {
+            runtime.service().execute(callback);
+        } catch (RejectedExecutionException e) {
+            callback.run();
+        }
+    }
+
+    /**
+     * Return errors to all calls in queue and calls waiting for the next attempt,
+     * and to all new calls. Executor is closed when runtime is stopped, because timers of queue are stopped with it.
+     */
+    public void close() {
+        closed = true;
+
+        List<CallAsync> pending;
+
+        synchronized (retrying) {
+            pending = new ArrayList<>(retrying);
+        }
+
+        for (CallAsync call : pending) {
+            if (retrying.remove(call)) {
+                call.onError(stopped(call));
+            }
+        }
+
+        failQueued();
+    }
+
+    /**
+     * Return errors to all calls in queue
+     */
+    private void failQueued() {
+        for (CallAsync.Priority priority : CallAsync.Priority.values()) {
+            CallQueue lane = queue.lane(priority);
+            CallAsync call;
+
+            while ((call = lane.poll()) != null) {
+                call.onError(stopped(call));
+            }
+        }
+    }
+
+    private static VkApiException stopped(CallAsync call) {
+        return new VkApiException(VkApiException.UNKNOWN, "Runtime of client is stopped", call.getMethodName());
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @param code Code of VK error
+     * @return true for errors after which token should not be used for a while:
+     * 5 - authorization failed, 29 - rate limit reached
+     */
+    static boolean isTokenError(int code) {
+        return code == VkApiException.AUTHORIZATION_FAILED || code == VkApiException.RATE_LIMIT_REACHED;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * @param retryPolicy Which failed calls are sent again, {@link RetryPolicy#none()} to return all errors at once
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * @return tokens of executor
+     */
+    public TokenPool getTokens() {
+        return tokens;
+    }
+
     /**
      * Method that puts all requests in a queue.
      *
      * @param call Call to be executed.
      */
     public void execute(CallAsync call) {
-        queue.add(call);
+        if (closed) {
+            call.onError(stopped(call));
+            return;
+        }
+
+        if (!queue.put(call)) {
+            LOG.error("Queue of calls is full, call rejected: {}", call);
+            call.onError(new VkApiException(VkApiException.UNKNOWN, "Queue of calls is full", call.getMethodName()));
+            return;
+        }
+
+        // Executor was closed while call was put to queue
+        if (closed) {
+            failQueued();
+            return;
+        }
+
+        startDraining();
+    }
+
+    /**
+     * @return queue of requests
+     */
+    public PriorityCallQueue getQueue() {
+        return queue;
     }
 }
@@ -0,0 +1,192 @@
+package com.github.stormbit.sdk.utils.vkapi;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLConnection;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * Transport on {@link HttpClient}: HTTP/2 when server supports it,
+ * connections and TLS sessions are reused by all requests of all clients
+ * that share the transport.
+ * <p>
+ * Size of pool and keep-alive of HTTP/1.1 connections are set by system properties
+ * 'jdk.httpclient.connectionPoolSize' and 'jdk.httpclient.keepalive.timeout'.
+ */
+public class HttpTransport implements Transport {
+
+    private static final HttpTransport DEFAULT = new HttpTransport(Duration.ofSeconds(10));
+
+    private static final int TIMEOUT_MILLIS = 30000;
+
+    /**
+     * Timeout of waiting for response of upload server after whole file is sent
+     */
+    private static final int UPLOAD_TIMEOUT_MILLIS = 300000;
+
+    private final HttpClient http;
+
+    /**
+     * @param connectTimeout Timeout of connecting to server
+     */
+    public HttpTransport(Duration connectTimeout) {
+        this(HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build());
+    }
+
+    /**
+     * @param http Configured client
+     */
+    public HttpTransport(HttpClient http) {
+        this.http = http;
+    }
+
+    /**
+     * @return transport that is shared by all clients by default
+     */
+    public static HttpTransport getDefault() {
+        return DEFAULT;
+    }
+
+    @Override
+    public String post(String url, Map<String, Object> form) {
+        return send(formRequest(url, form), HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    @Override
+    public CompletableFuture<String> postAsync(String url, Map<String, Object> form) {
+        return http.sendAsync(formRequest(url, form), HttpResponse.BodyHandlers.ofString()).thenApply(HttpResponse::body);
+    }
+
+    @Override
+    public Reader get(String url, int timeoutMillis) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(timeoutMillis))
+                .header("Accept-Charset", "utf-8")
+                .GET()
+                .build();
+
+        HttpResponse<InputStream> response = send(request, HttpResponse.BodyHandlers.ofInputStream());
+
+        return new InputStreamReader(response.body(), charset(response));
+    }
+
+    @Override
+    public String postMultipart(String url, String field, String fileName, UploadSource source) {
+        String boundary = "----vk-bot-sdk-" + UUID.randomUUID().toString().replace("-", "");
+
+        String contentType = URLConnection.guessContentTypeFromName(fileName);
+
+        byte[] head = ("--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"" + field + "\"; filename=\"" + fileName + "\"\r\n" +
+                "Content-Type: " + (contentType != null ? contentType : "application/octet-stream") + "\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+
+        // Content is read by parts while it is sent, length is known for bytes and files
+        HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.ofInputStream(() -> {
+            try {
+                return new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                        new ByteArrayInputStream(head),
+                        source.openStream(),
+                        new ByteArrayInputStream(tail))));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(UPLOAD_TIMEOUT_MILLIS))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(source.length() < 0 ? body : withLength(body, head.length + source.length() + tail.length))
+                .build();
+
+        try {
+            return send(request, HttpResponse.BodyHandlers.ofString()).body();
+        } finally {
+            source.close();
+        }
+    }
+
+    /**
+     * Body with known length, so it is not sent by chunks
+     */
+    private static HttpRequest.BodyPublisher withLength(HttpRequest.BodyPublisher body, long length) {
+        return new HttpRequest.BodyPublisher() {
+            @Override
+            public long contentLength() {
+                return length;
+            }
+
+            @Override
+            public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+                body.subscribe(subscriber);
+            }
+        };
+    }
+
+    private HttpRequest formRequest(String url, Map<String, Object> form) {
+        StringBuilder body = new StringBuilder();
+
+        for (Map.Entry<String, Object> entry : form.entrySet()) {
+            if (body.length() > 0) {
+                body.append('&');
+            }
+            body.append(URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8))
+                    .append('=')
+                    .append(URLEncoder.encode(String.valueOf(entry.getValue()), StandardCharsets.UTF_8));
+        }
+
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(TIMEOUT_MILLIS))
+                .header("Content-Type", "application/x-www-form-urlencoded; charset=utf-8")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        try {
+            return http.send(request, handler);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new IOException("Request was interrupted", e));
+        }
+    }
+
+    private static Charset charset(HttpResponse<?> response) {
+        String contentType = response.headers().firstValue("Content-Type").orElse("");
+        int index = contentType.toLowerCase().indexOf("charset=");
+
+        if (index >= 0) {
+            try {
+                return Charset.forName(contentType.substring(index + 8).split(";")[0].trim().replace("\"", ""));
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+
+        return StandardCharsets.UTF_8;
+    }
+}
@@ -0,0 +1,171 @@
+package com.github.stormbit.sdk.utils.vkapi;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket of requests per second for one access token.
+ * <p>
+ * Bucket holds up to 'limit' permits and refills with current rate.
+ * When VK answers with error 6 (Too many requests per second)
+ * rate is halved, and then slowly grows back to the limit after successful requests.
+ * <p>
+ * See more: <a href="https://vk.com/dev/api_requests">link</a>
+ */
+public class RateLimiter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RateLimiter.class);
+
+    /**
+     * Requests per second for community tokens
+     */
+    public static final int GROUP_LIMIT = 20;
+
+    /**
+     * Requests per second for user tokens
+     */
+    public static final int USER_LIMIT = 3;
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Limiters by tokens, so all executors with the same token share one bucket.
+     * Limiters are held by token pools of clients, and are removed from here when no client uses them.
+     */
+    private static final ConcurrentHashMap<String, KeyReference> limiters = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<RateLimiter> unused = new ReferenceQueue<>();
+
+    private final int limit;
+    private final double minRate;
+
+    /**
+     * Current permits per second
+     */
+    private double rate;
+    private double permits;
+    private long lastRefill;
+
+    /**
+     * @param limit Max requests per second, also capacity of bucket
+     */
+    public RateLimiter(int limit) {
+        this.limit = limit;
+        this.minRate = Math.max(1.0, limit / 10.0);
+        this.rate = limit;
+        this.permits = limit;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Get shared limiter of token
+     *
+     * @param key   Access token or other key of account
+     * @param limit Max requests per second
+     * @return limiter that is shared while any client with the same key holds it
+     */
+    public static RateLimiter forKey(String key, int limit) {
+        removeUnused();
+
+        while (true) {
+            KeyReference reference = limiters.get(key);
+            RateLimiter limiter = reference == null ? null : reference.get();
+
+            if (limiter != null) {
+                return limiter;
+            }
+
+            limiter = new RateLimiter(limit);
+            KeyReference created = new KeyReference(key, limiter);
+
+            if (reference == null ? limiters.putIfAbsent(key, created) == null : limiters.replace(key, reference, created)) {
+                return limiter;
+            }
+        }
+    }
+
+    private static void removeUnused() {
+        KeyReference reference;
+
+        while ((reference = (KeyReference) unused.poll()) != null) {
+            limiters.remove(reference.key, reference);
+        }
+    }
+
+    /**
+     * Take one permit if it is available
+     *
+     * @return 0 if permit was taken, or nanoseconds to wait until the next permit
+     */
+    public synchronized long tryAcquire() {
+        refill();
+
+        if (permits >= 1) {
+            permits -= 1;
+            return 0;
+        }
+
+        return (long) Math.ceil((1 - permits) * SECOND / rate);
+    }
+
+    /**
+     * @return 0 if permit is available, or nanoseconds to wait until the next permit
+     */
+    public synchronized long waitTime() {
+        refill();
+
+        return permits >= 1 ? 0 : (long) Math.ceil((1 - permits) * SECOND / rate);
+    }
+
+    /**
+     * Request was successful, rate grows back to the limit
+     */
+    public synchronized void onSuccess() {
+        if (rate < limit) {
+            refill();
+            rate = Math.min(limit, rate + minRate / 2);
+        }
+    }
+
+    /**
+     * VK returned error 6, rate is halved and bucket is emptied
+     */
+    public synchronized void onTooManyRequests() {
+        refill();
+        rate = Math.max(minRate, rate / 2);
+        permits = Math.min(permits, 0);
+
+        LOG.error("Too many requests per second, rate is decreased to {} requests per second", rate);
+    }
+
+    /**
+     * @return current permits per second
+     */
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        permits = Math.min(limit, permits + (now - lastRefill) * rate / SECOND);
+        lastRefill = now;
+    }
+
+    private static final class KeyReference extends WeakReference<RateLimiter> {
+
+        private final String key;
+
+        private KeyReference(String key, RateLimiter limiter) {
+            super(limiter, unused);
+            this.key = key;
+        }
+    }
+}
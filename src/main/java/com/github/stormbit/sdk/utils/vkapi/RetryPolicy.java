@@ -0,0 +1,163 @@
+package com.github.stormbit.sdk.utils.vkapi;
+
+import com.github.stormbit.sdk.exceptions.VkApiException;
+
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Which failed calls are sent again, how many times and after what delay
+ * <p>
+ * Delay grows twice after every failed attempt up to max delay, and random value
+ * from half of delay to the whole delay is taken, so calls that failed together are not sent again together.
+ * By default calls are sent again after errors that usually pass by themselves:
+ * 6 - too many requests per second, 9 - flood control, 10 - internal server error,
+ * and after network errors and bad responses.
+ * Network error or bad response does not mean that VK did not run the call,
+ * so after them only calls that can be run twice are sent again:
+ * read methods (get*, search*, is*), calls with 'random_id', methods from {@link #repeatable(String...)}
+ * and calls marked by {@link com.github.stormbit.sdk.utils.vkapi.calls.CallAsync#setRepeatable(boolean)}.
+ * After errors of token: 5 - authorization failed, 29 - rate limit reached,
+ * calls are sent again only if pool has other tokens that can be used.
+ * <p>
+ * See more: <a href="https://vk.com/dev/errors">link</a>
+ */
+@SuppressWarnings("unused")
+public class RetryPolicy {
+
+    private final Map<Integer, Rule> rules = new ConcurrentHashMap<>();
+
+    /**
+     * Methods that are sent again after network errors and bad responses, though they are not read methods
+     */
+    private final Set<String> repeatableMethods = ConcurrentHashMap.newKeySet();
+
+    private volatile long maxDelayMillis = 30000;
+
+    private static final class Rule {
+        private final int attempts;
+        private final long baseDelayMillis;
+
+        private Rule(int attempts, long baseDelayMillis) {
+            this.attempts = attempts;
+            this.baseDelayMillis = baseDelayMillis;
+        }
+    }
+
+    /**
+     * @return new policy with retries of errors 6, 9, 10, errors of token, network errors and bad responses
+     */
+    public static RetryPolicy getDefault() {
+        return new RetryPolicy()
+                .retry(VkApiException.TOO_MANY_REQUESTS, 5, 250)
+                .retry(VkApiException.FLOOD_CONTROL, 3, 2000)
+                .retry(VkApiException.INTERNAL_ERROR, 3, 500)
+                .retry(VkApiException.NETWORK, 3, 1000)
+                .retry(VkApiException.BAD_RESPONSE, 3, 1000)
+                .retry(VkApiException.AUTHORIZATION_FAILED, 3, 100)
+                .retry(VkApiException.RATE_LIMIT_REACHED, 3, 100);
+    }
+
+    /**
+     * @return policy that does not send failed calls again
+     */
+    public static RetryPolicy none() {
+        return new RetryPolicy();
+    }
+
+    /**
+     * @param code            Code of error, VK code or one of {@link VkApiException#NETWORK}, {@link VkApiException#BAD_RESPONSE}
+     * @param attempts        Max count of attempts of call, including the first one
+     * @param baseDelayMillis Delay after the first failed attempt
+     * @return this
+     */
+    public RetryPolicy retry(int code, int attempts, long baseDelayMillis) {
+        if (attempts < 2) {
+            rules.remove(code);
+        } else {
+            rules.put(code, new Rule(attempts, Math.max(1, baseDelayMillis)));
+        }
+        return this;
+    }
+
+    /**
+     * @param methods Methods that can be run twice, so they are sent again after network errors and bad responses
+     * @return this
+     */
+    public RetryPolicy repeatable(String... methods) {
+        repeatableMethods.addAll(Arrays.asList(methods));
+        return this;
+    }
+
+    /**
+     * @param method Method name
+     * @param params Params of call, or null
+     * @return true if call can be run twice: read method, call with 'random_id' or method from {@link #repeatable(String...)}
+     */
+    public boolean isRepeatable(String method, JSONObject params) {
+        if (repeatableMethods.contains(method)) {
+            return true;
+        }
+
+        if (params != null && params.optLong("random_id") != 0) {
+            return true;
+        }
+
+        String name = method.substring(method.indexOf('.') + 1);
+
+        return name.startsWith("get") || name.startsWith("search") || name.startsWith("is");
+    }
+
+    /**
+     * @param code Code of error
+     * @return true if call could be run by VK though it failed: network error or bad response
+     */
+    public static boolean isAmbiguous(int code) {
+        return code == VkApiException.NETWORK || code == VkApiException.BAD_RESPONSE;
+    }
+
+    /**
+     * @param maxDelayMillis Max delay between attempts
+     * @return this
+     */
+    public RetryPolicy maxDelay(long maxDelayMillis) {
+        this.maxDelayMillis = maxDelayMillis;
+        return this;
+    }
+
+    /**
+     * @param code   Code of error
+     * @param failed Count of failed attempts of call
+     * @return milliseconds to wait before the next attempt, or -1 if call must not be sent again
+     */
+    public long delayMillis(int code, int failed) {
+        Rule rule = rules.get(code);
+
+        if (rule == null || failed >= rule.attempts) {
+            return -1;
+        }
+
+        long delay = Math.min(maxDelayMillis, rule.baseDelayMillis << Math.min(failed - 1, 20));
+
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /**
+     * @param code       Code of error
+     * @param failed     Count of failed attempts of call
+     * @param repeatable True if call can be run twice
+     * @return milliseconds to wait before the next attempt, or -1 if call must not be sent again
+     */
+    public long delayMillis(int code, int failed, boolean repeatable) {
+        if (!repeatable && isAmbiguous(code)) {
+            return -1;
+        }
+
+        return delayMillis(code, failed);
+    }
+}
@@ -0,0 +1,282 @@
+package com.github.stormbit.sdk.utils.vkapi;
+
+import com.github.stormbit.sdk.callbacks.Callback;
+import com.github.stormbit.sdk.clients.Client;
+import com.github.stormbit.sdk.utils.Utils;
+import com.github.stormbit.sdk.utils.vkapi.calls.CallAsync;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Joins messages with the same content that are sent to different peers
+ * in a short time into one 'messages.send' with 'peer_ids'
+ * <p>
+ * Messages wait for others for {@link #WINDOW_MILLIS}, so only bulk messages are joined,
+ * and replies are sent at once. Message that waits is sent before any other message to its peer,
+ * see {@link #flush(int, CallAsync.Priority)}, so messages of one peer are not reordered.
+ * Every sender gets result of its own peer: message id, or 'false' if message was not sent.
+ * Only community tokens can send to several peers at once.
+ * More: <a href="https://vk.com/dev/messages.send">link</a>
+ */
+@SuppressWarnings("unused")
+public class SendCoalescer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SendCoalescer.class);
+
+    /**
+     * Max count of peers in one 'messages.send'
+     */
+    public static final int MAX_PEERS = 100;
+
+    /**
+     * For how long messages wait for other messages with the same content
+     */
+    public static long WINDOW_MILLIS = 50;
+
+    private final Client client;
+
+    /**
+     * Batches by content of message
+     */
+    private final Map<String, Batch> batches = new HashMap<>();
+
+    private static final class Batch {
+        private final JSONObject params;
+        private final CallAsync.Priority priority;
+        private final List<Integer> peers = new ArrayList<>();
+        private final List<Callback<Object>> callbacks = new ArrayList<>();
+
+        private Batch(JSONObject params, CallAsync.Priority priority) {
+            this.params = params;
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * True when waiting messages are sent at shutdown of runtime
+     */
+    private boolean shutdownHookAdded = false;
+
+    public SendCoalescer(Client client) {
+        this.client = client;
+    }
+
+    /**
+     * Send bulk message to peer, maybe together with messages of the same content
+     *
+     * @param params   Params of 'messages.send' without 'peer_id'
+     * @param peerId   Peer
+     * @param callback Message id, or 'false' if message was not sent
+     */
+    public void send(JSONObject params, int peerId, Callback<Object> callback) {
+        send(params, peerId, CallAsync.Priority.BULK, callback);
+    }
+
+    /**
+     * Send message to peer, maybe together with messages of the same content and priority
+     *
+     * @param params   Params of 'messages.send' without 'peer_id'
+     * @param peerId   Peer
+     * @param priority Priority of call in queue
+     * @param callback Message id, or 'false' if message was not sent
+     */
+    public void send(JSONObject params, int peerId, CallAsync.Priority priority, Callback<Object> callback) {
+        String key = priority + ":" + key(params);
+        List<Batch> ready = new ArrayList<>(2);
+        boolean first = false;
+        boolean hook = false;
+
+        synchronized (this) {
+
+            // Earlier messages to the same peer are sent first, and the same message to the same peer is not joined
+            ready.addAll(removeBatchesOf(peerId));
+
+            Batch batch = batches.get(key);
+
+            if (batch == null) {
+                batch = new Batch(params, priority);
+                batches.put(key, batch);
+                first = true;
+
+                hook = !shutdownHookAdded;
+                shutdownHookAdded = true;
+            }
+
+            batch.peers.add(peerId);
+            batch.callbacks.add(callback);
+
+            if (batch.peers.size() >= MAX_PEERS) {
+                ready.add(batches.remove(key));
+                first = false;
+            }
+        }
+
+        ready.forEach(waiting -> send(waiting, waiting.priority));
+
+        // Timers of waiting messages are stopped with runtime, so messages are sent then and get their errors
+        if (hook) {
+            client.runtime().onShutdown(this::flushAll);
+        }
+
+        if (first) {
+            try {
+                client.runtime().scheduler().schedule(() -> flush(key), WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                flush(key);
+            }
+        }
+    }
+
+    /**
+     * Send waiting messages to peer before other message to it.
+     * Waiting messages are sent with priority of other message, if it is higher,
+     * so they are in the same lane of queue and are executed before it.
+     *
+     * @param peerId   Peer
+     * @param priority Priority of message that is sent to peer now
+     */
+    public void flush(int peerId, CallAsync.Priority priority) {
+        List<Batch> ready;
+
+        synchronized (this) {
+            if (batches.isEmpty()) {
+                return;
+            }
+
+            ready = removeBatchesOf(peerId);
+        }
+
+        for (Batch batch : ready) {
+            send(batch, batch.priority.compareTo(priority) < 0 ? batch.priority : priority);
+        }
+    }
+
+    /**
+     * Send all waiting messages
+     */
+    public void flushAll() {
+        List<Batch> ready;
+
+        synchronized (this) {
+            ready = new ArrayList<>(batches.values());
+            batches.clear();
+        }
+
+        ready.forEach(batch -> send(batch, batch.priority));
+    }
+
+    /**
+     * Send batch if it is still waiting
+     */
+    private void flush(String key) {
+        Batch batch;
+
+        synchronized (this) {
+            batch = batches.remove(key);
+        }
+
+        if (batch != null) {
+            send(batch, batch.priority);
+        }
+    }
+
+    /**
+     * @return waiting batches with peer, removed from waiting ones
+     */
+    private List<Batch> removeBatchesOf(int peerId) {
+        List<Batch> removed = new ArrayList<>(1);
+
+        batches.values().removeIf(batch -> {
+            if (batch.peers.contains(peerId)) {
+                removed.add(batch);
+                return true;
+            }
+            return false;
+        });
+
+        return removed;
+    }
+
+    private void send(Batch batch, CallAsync.Priority priority) {
+        JSONObject params = new JSONObject(batch.params.toString());
+
+        // The same random_id is kept when call is made again, so messages are not duplicated
+        if (!params.has("random_id")) {
+            params.put("random_id", Utils.randomId());
+        }
+
+        if (batch.peers.size() == 1) {
+            params.put("peer_id", batch.peers.get(0));
+            client.api().call("messages.send", params, priority, batch.callbacks.get(0));
+            return;
+        }
+
+        StringBuilder peerIds = new StringBuilder();
+
+        for (Integer peer : batch.peers) {
+            if (peerIds.length() > 0) peerIds.append(',');
+            peerIds.append(peer);
+        }
+
+        params.put("peer_ids", peerIds.toString());
+
+        client.api().call("messages.send", params, priority, response -> {
+            Map<Integer, Object> results = results(response);
+
+            if (!(response instanceof JSONArray)) {
+                LOG.error("Messages to peers {} not sent: {}", peerIds, response);
+            }
+
+            for (int i = 0; i < batch.peers.size(); i++) {
+                batch.callbacks.get(i).onResult(results.getOrDefault(batch.peers.get(i), "false"));
+            }
+        });
+    }
+
+    /**
+     * Every peer has its own result of 'messages.send' with 'peer_ids': {peer_id, message_id} or {peer_id, error}
+     *
+     * @param response Response of 'messages.send' with 'peer_ids'
+     * @return message ids, or 'false', by peers
+     */
+    static Map<Integer, Object> results(Object response) {
+        Map<Integer, Object> results = new HashMap<>();
+
+        if (response instanceof JSONArray) {
+            JSONArray items = (JSONArray) response;
+
+            for (int i = 0; i < items.length(); i++) {
+                JSONObject item = items.optJSONObject(i);
+
+                if (item != null && item.has("peer_id")) {
+                    results.put(item.getInt("peer_id"), item.has("message_id") ? item.get("message_id") : "false");
+                }
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * @return params in the same order whatever order of adding was
+     */
+    private static String key(JSONObject params) {
+        StringBuilder key = new StringBuilder();
+
+        for (String name : new TreeSet<>(params.keySet())) {
+            key.append(name).append('=').append(params.get(name)).append('&');
+        }
+
+        return key.toString();
+    }
+}
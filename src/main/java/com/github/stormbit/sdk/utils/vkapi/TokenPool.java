@@ -0,0 +1,199 @@
+package com.github.stormbit.sdk.utils.vkapi;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Access tokens of one account that are used in turn
+ * <p>
+ * Every token has its own rate limiter, so with several tokens
+ * more requests per second can be sent.
+ * Clients with the same token share one limiter of it.
+ * Token that got error of authorization or limit is not used for a while.
+ */
+@SuppressWarnings("unused")
+public class TokenPool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TokenPool.class);
+
+    /**
+     * For how long token is not used after error of authorization or limit
+     */
+    public static long EVICTION_MILLIS = 60000;
+
+    private final Token[] tokens;
+
+    /**
+     * Index of token to try first
+     */
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * @param keys  Access tokens, or other keys of accounts
+     * @param limit Max requests per second of every token
+     */
+    public TokenPool(List<String> keys, int limit) {
+        if (keys.isEmpty()) {
+            throw new IllegalArgumentException("At least one token is required");
+        }
+
+        this.tokens = new Token[keys.size()];
+
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = new Token(keys.get(i), RateLimiter.forKey(keys.get(i), limit));
+        }
+    }
+
+    /**
+     * @param key     Access token or other key of account
+     * @param limiter Rate limiter of key
+     */
+    public TokenPool(String key, RateLimiter limiter) {
+        this.tokens = new Token[]{new Token(key, limiter)};
+    }
+
+    /**
+     * Take permit of the next token that has it
+     *
+     * @return token with taken permit, or null if there are no permits
+     */
+    public Token acquire() {
+        long now = System.nanoTime();
+        int start = next.getAndIncrement();
+
+        for (int i = 0; i < tokens.length; i++) {
+            Token token = tokens[Math.floorMod(start + i, tokens.length)];
+
+            if (!token.isEvicted(now) && token.limiter.tryAcquire() == 0) {
+                return token;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Wait until any token has permit and take it
+     *
+     * @return token with taken permit
+     * @throws InterruptedException if thread was interrupted while waiting
+     */
+    public Token acquireBlocking() throws InterruptedException {
+        Token token;
+
+        while ((token = acquire()) == null) {
+            TimeUnit.NANOSECONDS.sleep(Math.max(nextPermitIn(), TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+
+        return token;
+    }
+
+    /**
+     * @return nanoseconds until any token has permit
+     */
+    public long nextPermitIn() {
+        long now = System.nanoTime();
+        long wait = Long.MAX_VALUE;
+
+        for (Token token : tokens) {
+            wait = Math.min(wait, token.isEvicted(now) ? token.evictedUntil - now : token.limiter.waitTime());
+        }
+
+        return wait;
+    }
+
+    /**
+     * Do not use token for {@link #EVICTION_MILLIS}.
+     * Token is not evicted if it is the only token in pool.
+     *
+     * @param token  Token
+     * @param reason Error that token got
+     * @return true if token was evicted and other tokens can be used now, so calls can be sent with them
+     */
+    public boolean evict(Token token, String reason) {
+        if (tokens.length == 1) {
+            return false;
+        }
+
+        token.evictedUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(EVICTION_MILLIS);
+
+        LOG.error("Token {} is not used for {} ms: {}", token, EVICTION_MILLIS, reason);
+        return available() > 0;
+    }
+
+    /**
+     * @return current requests per second of all tokens that are not evicted now
+     */
+    public double rate() {
+        long now = System.nanoTime();
+        double rate = 0;
+
+        for (Token token : tokens) {
+            if (!token.isEvicted(now)) rate += token.limiter.getRate();
+        }
+
+        return rate;
+    }
+
+    /**
+     * @return count of tokens
+     */
+    public int size() {
+        return tokens.length;
+    }
+
+    /**
+     * @return count of tokens that are not evicted now
+     */
+    public int available() {
+        long now = System.nanoTime();
+        int count = 0;
+
+        for (Token token : tokens) {
+            if (!token.isEvicted(now)) count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Access token with its rate limiter
+     */
+    public static final class Token {
+
+        private final String key;
+        private final RateLimiter limiter;
+
+        private volatile long evictedUntil;
+
+        private Token(String key, RateLimiter limiter) {
+            this.key = key;
+            this.limiter = limiter;
+            this.evictedUntil = System.nanoTime();
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public RateLimiter getLimiter() {
+            return limiter;
+        }
+
+        private boolean isEvicted(long now) {
+            return evictedUntil - now > 0;
+        }
+
+        /**
+         * Only end of token is shown, so logs do not contain tokens
+         */
+        @Override
+        public String toString() {
+            return key == null || key.length() <= 4 ? "***" : "***" + key.substring(key.length() - 4);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.stormbit.sdk.utils.vkapi;
+
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * HTTP client of requests to VK API, longpoll and upload servers
+ * <p>
+ * Requests of user account that need cookies of web session
+ * are sent with {@link Auth#session}.
+ * Errors of connection are thrown as {@link UncheckedIOException}.
+ */
+public interface Transport {
+
+    /**
+     * Send POST request with url-encoded form
+     *
+     * @param url  Url
+     * @param form Params of form
+     * @return body of response
+     */
+    String post(String url, Map<String, Object> form);
+
+    /**
+     * Send POST request with url-encoded form without waiting for response
+     *
+     * @param url  Url
+     * @param form Params of form
+     * @return future body of response
+     */
+    CompletableFuture<String> postAsync(String url, Map<String, Object> form);
+
+    /**
+     * Send GET request and read body of response while it is received
+     *
+     * @param url           Url
+     * @param timeoutMillis Timeout of whole request
+     * @return body of response, must be closed
+     */
+    Reader get(String url, int timeoutMillis);
+
+    /**
+     * Send POST request with file in multipart body
+     *
+     * @param url      Url of upload server
+     * @param field    Name of field of file
+     * @param fileName Name of file
+     * @param content  Content of file
+     * @return body of response
+     */
+    default String postMultipart(String url, String field, String fileName, byte[] content) {
+        return postMultipart(url, field, fileName, UploadSource.of(content, fileName));
+    }
+
+    /**
+     * Send POST request with file in multipart body,
+     * content is read while it is sent and source is closed after sending
+     *
+     * @param url      Url of upload server
+     * @param field    Name of field of file
+     * @param fileName Name of file
+     * @param source   Content of file
+     * @return body of response
+     */
+    String postMultipart(String url, String field, String fileName, UploadSource source);
+}
@@ -0,0 +1,165 @@
+package com.github.stormbit.sdk.utils.vkapi;
+
+import com.github.stormbit.sdk.clients.Client;
+import com.github.stormbit.sdk.utils.vkapi.calls.CallAsync;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Typing activity of bot in dialogs
+ * <p>
+ * VK shows typing for several seconds after 'messages.setActivity',
+ * so activity is sent to peer not more often than once per {@link #TTL_MILLIS},
+ * and other requests of typing in this time are dropped before they reach queue of calls.
+ * While messages of peer are handled, typing is sent again every {@link #TTL_MILLIS}.
+ * More: <a href="https://vk.com/dev/messages.setActivity">link</a>
+ */
+@SuppressWarnings("unused")
+public class TypingManager {
+
+    /**
+     * For how long VK shows typing after one activity
+     */
+    public static long TTL_MILLIS = 5000;
+
+    private final Client client;
+
+    /**
+     * Peers that got typing recently or messages of which are handled now
+     */
+    private final Map<Integer, Peer> peers = new HashMap<>();
+
+    private static final class Peer {
+
+        /**
+         * Time of the last activity, 0 if it was not sent
+         */
+        private long sentAt = 0;
+
+        /**
+         * Count of messages of peer that are handled now
+         */
+        private int active = 0;
+
+        /**
+         * True while there is timer of this peer
+         */
+        private boolean scheduled = false;
+    }
+
+    public TypingManager(Client client) {
+        this.client = client;
+    }
+
+    /**
+     * Show typing in dialog, if it is not shown already
+     *
+     * @param peerId Peer
+     */
+    public void typing(int peerId) {
+        boolean send = false;
+        boolean schedule = false;
+
+        synchronized (this) {
+            Peer peer = peers.computeIfAbsent(peerId, k -> new Peer());
+            long now = System.nanoTime();
+
+            if (peer.sentAt == 0 || now - peer.sentAt >= TimeUnit.MILLISECONDS.toNanos(TTL_MILLIS)) {
+                peer.sentAt = now;
+                send = true;
+
+                if (!peer.scheduled) {
+                    peer.scheduled = schedule = true;
+                }
+            }
+        }
+
+        if (send) {
+            send(peerId);
+        }
+
+        if (schedule) {
+            schedule(peerId);
+        }
+    }
+
+    /**
+     * Message of peer is handled from now, typing that is shown is kept until {@link #end(int)}
+     *
+     * @param peerId Peer
+     */
+    public synchronized void begin(int peerId) {
+        peers.computeIfAbsent(peerId, k -> new Peer()).active++;
+    }
+
+    /**
+     * Message of peer is handled
+     *
+     * @param peerId Peer
+     */
+    public synchronized void end(int peerId) {
+        Peer peer = peers.get(peerId);
+
+        if (peer == null) {
+            return;
+        }
+
+        peer.active--;
+
+        // Peer without timer is removed now, other one is removed by its timer
+        if (peer.active <= 0 && !peer.scheduled) {
+            peers.remove(peerId);
+        }
+    }
+
+    /**
+     * Typing ends: it is sent again if messages of peer are still handled, or peer is forgotten
+     */
+    private void refresh(int peerId) {
+        synchronized (this) {
+            Peer peer = peers.get(peerId);
+
+            if (peer == null) {
+                return;
+            }
+
+            if (peer.active <= 0) {
+                peers.remove(peerId);
+                return;
+            }
+
+            peer.sentAt = System.nanoTime();
+        }
+
+        send(peerId);
+        schedule(peerId);
+    }
+
+    private void schedule(int peerId) {
+        try {
+            client.runtime().scheduler().schedule(() -> refresh(peerId), TTL_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+
+            // Runtime is stopped, typing is not sent again
+            synchronized (this) {
+                peers.remove(peerId);
+            }
+        }
+    }
+
+    private void send(int peerId) {
+        client.api().call("messages.setActivity", new JSONObject().put("type", "typing").put("peer_id", peerId), CallAsync.Priority.REALTIME, response -> {
+        });
+    }
+
+    /**
+     * @return count of peers that got typing recently or messages of which are handled now
+     */
+    public synchronized int size() {
+        return peers.size();
+    }
+}
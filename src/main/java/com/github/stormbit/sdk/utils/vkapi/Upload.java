@@ -2,10 +2,9 @@ package com.github.stormbit.sdk.utils.vkapi;
 
 import com.github.stormbit.sdk.callbacks.Callback;
 import com.github.stormbit.sdk.clients.Client;
+import com.github.stormbit.sdk.objects.Chat;
 import com.github.stormbit.sdk.utils.Utils;
 import com.github.stormbit.sdk.utils.vkapi.docs.DocTypes;
-import net.dongliu.requests.Requests;
-import net.dongliu.requests.body.Part;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -13,18 +12,20 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLConnection;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Predicate;
 
 @SuppressWarnings("unused")
 public class Upload {
     private final Logger log = LoggerFactory.getLogger(Upload.class);
     private final API api;
+    private final Client client;
 
     public Upload(Client client) {
+        this.client = client;
         api = client.api();
     }
 
@@ -55,12 +56,12 @@ public class Upload {
             }
         }
 
-        byte[] photoBytes;
+        UploadSource photoSource;
         switch (type) {
 
             case "fromFile": {
                 try {
-                    photoBytes = Files.readAllBytes(Paths.get(photoFile.toURI()));
+                    photoSource = UploadSource.of(photoFile.toPath());
                 } catch (IOException ignored) {
                     log.error("Error when reading file {}", photoFile.getAbsolutePath());
                     callback.onResult("false");
@@ -72,7 +73,7 @@ public class Upload {
 
             case "fromUrl": {
                 try {
-                    photoBytes = Utils.toByteArray(photoUrl);
+                    photoSource = UploadSource.of(photoUrl);
                 } catch (IOException e) {
                     log.error("Error {} occurred when reading URL {}", e.toString(), photo);
                     callback.onResult("false");
@@ -89,9 +90,7 @@ public class Upload {
             }
         }
 
-        if (photoBytes != null) {
-            uploadPhotoAsync(photoBytes, peerId, callback);
-        }
+        uploadPhotoAsync(photoSource, peerId, callback);
     }
 
     /**
@@ -101,36 +100,44 @@ public class Upload {
      * @param callback callback
      */
     public void uploadPhotoAsync(byte[] photoBytes, int peerId, Callback<Object> callback) {
-
         if (photoBytes != null) {
+            uploadPhotoAsync(UploadSource.of(photoBytes, "photo"), peerId, callback);
+        }
+    }
 
-            JSONObject params_getMessagesUploadServer = new JSONObject().put("peer_id", peerId);
-            api.call("photos.getMessagesUploadServer", params_getMessagesUploadServer, response -> {
+    /**
+     * Async uploading photos
+     * @param photoSource Photo bytes, file or url
+     * @param peerId peer id
+     * @param callback callback
+     */
+    public void uploadPhotoAsync(UploadSource photoSource, int peerId, Callback<Object> callback) {
 
-                if (response.toString().equalsIgnoreCase("false")) {
-                    log.error("Can't get messages upload server, aborting. Photo wont be attached to message.");
-                    callback.onResult("false");
-                    return;
-                }
+        if (photoSource != null) {
+
+            String mimeType;
 
-                String uploadUrl = new JSONObject(response.toString()).getString("upload_url");
+            try {
+                mimeType = photoSource.getMimeType();
+            } catch (IOException e) {
+                log.error(e.getMessage());
+                photoSource.close();
 
-                String mimeType;
+                callback.onResult("false");
+                return;
+            }
 
-                try {
-                    mimeType = Utils.getMimeType(photoBytes);
-                } catch (IOException e) {
-                    log.error(e.getMessage());
+            JSONObject params_getMessagesUploadServer = new JSONObject().put("peer_id", peerId);
+            String key = UploadServerCache.key("photos.getMessagesUploadServer", peerClass(peerId));
+
+            uploadAsync("photos.getMessagesUploadServer", params_getMessagesUploadServer, key, "photo", "image."+mimeType, photoSource, accepts("photo"), response_uploadFileString -> {
 
+                if (response_uploadFileString == null) {
+                    log.error("Can't get messages upload server, aborting. Photo wont be attached to message.");
                     callback.onResult("false");
                     return;
                 }
 
-                String response_uploadFileString = Requests
-                        .post(uploadUrl)
-                        .multiPartBody(Part.file("photo", "image."+mimeType, photoBytes))
-                        .send().readToText();
-
                 if (response_uploadFileString.length() < 2 || response_uploadFileString.contains("error") || !response_uploadFileString.contains("photo")) {
                     log.error("Photo wan't uploaded: {}", response_uploadFileString);
                     callback.onResult("false");
@@ -189,7 +196,6 @@ public class Upload {
      */
     public void uploadDocAsync(JSONObject doc, int peerId, Callback<Object> callback) {
         String type = null;
-        String fileNameField;
 
         File docFile = new File(doc.getString("doc"));
 
@@ -210,13 +216,12 @@ public class Upload {
             }
         }
 
-        byte[] docBytes;
+        UploadSource docSource;
 
         switch (type) {
             case "fromFile": {
                 try {
-                    docBytes = Files.readAllBytes(Paths.get(docFile.toURI()));
-                    fileNameField = docFile.getName();
+                    docSource = UploadSource.of(docFile.toPath());
                 } catch (IOException ignored) {
                     log.error("Error when reading file {}", docFile.getAbsolutePath());
                     callback.onResult("false");
@@ -228,13 +233,7 @@ public class Upload {
 
             case "fromUrl": {
                 try {
-                    URLConnection conn = docUrl.openConnection();
-                    try {
-                        docBytes = Utils.toByteArray(conn);
-                        fileNameField = Utils.guessFileNameByContentType(conn.getContentType());
-                    } finally {
-                        Utils.close(conn);
-                    }
+                    docSource = UploadSource.of(docUrl);
                 } catch (IOException ignored) {
                     log.error("Error when reading URL {}", doc);
                     callback.onResult("false");
@@ -250,23 +249,18 @@ public class Upload {
             }
         }
 
-        if (docBytes != null) {
+        if (docSource != null) {
             JSONObject params = new JSONObject().put("peer_id", peerId).put("type", doc.getString("type"));
 
-            api.call("docs.getMessagesUploadServer", params, response -> {
-                if (response.toString().equalsIgnoreCase("false")) {
+            String key = UploadServerCache.key("docs.getMessagesUploadServer", doc.getString("type"), peerClass(peerId));
+
+            uploadAsync("docs.getMessagesUploadServer", params, key, "file", docSource.getFileName(), docSource, accepts("file"), response_uploadFileString -> {
+                if (response_uploadFileString == null) {
                     log.error("Can't get messages upload server, aborting. Doc wont be attached to message.");
                     callback.onResult("false");
                     return;
                 }
 
-                String uploadUrl = new JSONObject(response.toString()).getString("upload_url");
-
-                String response_uploadFileString = Requests
-                        .post(uploadUrl)
-                        .multiPartBody(Part.file("file", fileNameField, docBytes))
-                        .send().readToText();
-
                 if (response_uploadFileString.length() < 2 || response_uploadFileString.contains("error") || !response_uploadFileString.contains("file")) {
                     log.error("Doc won't uploaded: {}", response_uploadFileString);
                     callback.onResult("false");
@@ -341,12 +335,12 @@ public class Upload {
             }
         }
 
-        byte[] photoBytes;
+        UploadSource photoSource;
 
         switch (type) {
             case "fromFile": {
                 try {
-                    photoBytes = Files.readAllBytes(Paths.get(photoFile.toURI()));
+                    photoSource = UploadSource.of(photoFile.toPath());
                 } catch (IOException ignored) {
                     log.error("Error when reading file {}", photoFile.getAbsolutePath());
                     callback.onResult("false");
@@ -358,7 +352,7 @@ public class Upload {
 
             case "fromUrl": {
                 try {
-                    photoBytes = Utils.toByteArray(photoUrl);
+                    photoSource = UploadSource.of(photoUrl);
                 } catch (IOException e) {
                     log.error("Error {} occurred when reading URL {}", e.toString(), photo);
                     callback.onResult("false");
@@ -375,7 +369,7 @@ public class Upload {
             }
         }
 
-        uploadPhotoChatAsync(photoBytes, chatId, callback);
+        uploadPhotoChatAsync(photoSource, chatId, callback);
     }
 
     /**
@@ -385,32 +379,38 @@ public class Upload {
      */
     public void uploadPhotoChatAsync(byte[] photoBytes, int chatId, Callback<Object> callback) {
         if (photoBytes != null) {
-            JSONObject params_getMessagesUploadServer = new  JSONObject().put("chat_id", chatId);
+            uploadPhotoChatAsync(UploadSource.of(photoBytes, "photo"), chatId, callback);
+        }
+    }
 
-            api.call("photos.getChatUploadServer", params_getMessagesUploadServer, response -> {
-                if (response.toString().equalsIgnoreCase("false")) {
-                    log.error("Can't get messages upload server, aborting. Photo wont be attached to message.");
-                    callback.onResult(false);
-                    return;
-                }
+    /**
+     * @param photoSource bytes, file or url
+     * @param chatId chat id
+     * @param callback callback
+     */
+    public void uploadPhotoChatAsync(UploadSource photoSource, int chatId, Callback<Object> callback) {
+        if (photoSource != null) {
+            String mimeType;
 
-                String uploadUrl = new JSONObject(response.toString()).getString("upload_url");
+            try {
+                mimeType = photoSource.getMimeType();
+            } catch (IOException e) {
+                log.error(e.getMessage());
+                photoSource.close();
+                callback.onResult("false");
+                return;
+            }
 
-                String mimeType;
+            JSONObject params_getMessagesUploadServer = new  JSONObject().put("chat_id", chatId);
+            String key = UploadServerCache.key("photos.getChatUploadServer", chatId);
 
-                try {
-                    mimeType = Utils.getMimeType(photoBytes);
-                } catch (IOException e) {
-                    log.error(e.getMessage());
-                    callback.onResult("false");
+            uploadAsync("photos.getChatUploadServer", params_getMessagesUploadServer, key, "file", "photo."+mimeType, photoSource, accepts("response"), responseUploadFileString -> {
+                if (responseUploadFileString == null) {
+                    log.error("Can't get messages upload server, aborting. Photo wont be attached to message.");
+                    callback.onResult(false);
                     return;
                 }
 
-                String responseUploadFileString = Requests
-                        .post(uploadUrl)
-                        .multiPartBody(Part.file("file", "photo."+mimeType, photoBytes))
-                        .send().readToText();
-
                 if (responseUploadFileString.length() < 2 || responseUploadFileString.contains("error") || !responseUploadFileString.contains("response")) {
                     log.error("Photo wan't uploaded: {}", responseUploadFileString);
                     callback.onResult("false");
@@ -462,12 +462,12 @@ public class Upload {
             return;
         }
 
-        byte[] bytes;
+        UploadSource source;
         File coverFile = new File(cover);
 
         if (coverFile.exists()) {
             try {
-                bytes = Utils.toByteArray(coverFile.toURI().toURL());
+                source = UploadSource.of(coverFile.toPath());
             } catch (IOException e) {
                 log.error("Cover file was exists, but IOException occurred: {}", e.toString());
                 return;
@@ -476,14 +476,14 @@ public class Upload {
             URL coverUrl;
             try {
                 coverUrl = new URL(cover);
-                bytes = Utils.toByteArray(coverUrl);
+                source = UploadSource.of(coverUrl);
             } catch (IOException e) {
                 log.error("Bad string was provided to uploadCover method: path to file or url was expected, but got this: {}, error: {}", cover, e.toString());
                 return;
             }
         }
 
-        uploadCoverGroupAsync(bytes, groupId, callback);
+        uploadCoverGroupAsync(source, groupId, callback);
     }
 
 
@@ -495,6 +495,17 @@ public class Upload {
      * @param callback response will return to callback
      */
     public void uploadCoverGroupAsync(byte[] bytes, int groupId, Callback<Object> callback) {
+        uploadCoverGroupAsync(UploadSource.of(bytes, "cover"), groupId, callback);
+    }
+
+    /**
+     * Updating cover by file or url
+     *
+     * @param source   bytes, file or url
+     * @param groupId  group id
+     * @param callback response will return to callback
+     */
+    public void uploadCoverGroupAsync(UploadSource source, int groupId, Callback<Object> callback) {
         JSONObject params_getUploadServer = new JSONObject()
                 .put("group_id", groupId)
                 .put("crop_x", 0)
@@ -502,23 +513,21 @@ public class Upload {
                 .put("crop_x2", 1590)
                 .put("crop_y2", 400);
 
-        api.call("photos.getOwnerCoverPhotoUploadServer", params_getUploadServer, response -> {
-            String uploadUrl = new JSONObject(response.toString()).getString("upload_url");
+        String mimeType;
 
-            String mimeType;
+        try {
+            mimeType = source.getMimeType();
+        } catch (IOException e) {
+            log.error(e.getMessage());
+            source.close();
+            if (callback != null) callback.onResult("false");
+            return;
+        }
 
-            try {
-                mimeType = Utils.getMimeType(bytes);
-            } catch (IOException e) {
-                log.error(e.getMessage());
-                if (callback != null) callback.onResult("false");
-                return;
-            }
+        String key = UploadServerCache.key("photos.getOwnerCoverPhotoUploadServer", groupId);
 
-            String coverUploadedResponseString = Requests
-                    .post(uploadUrl)
-                    .multiPartBody(Part.file("photo", "image."+mimeType, bytes))
-                    .send().readToText();
+        uploadAsync("photos.getOwnerCoverPhotoUploadServer", params_getUploadServer, key, "photo", "image."+mimeType, source, accepts("hash"), uploadedResponseString -> {
+            String coverUploadedResponseString = uploadedResponseString;
 
             coverUploadedResponseString = (coverUploadedResponseString != null && coverUploadedResponseString.length() > 2) ? coverUploadedResponseString : "{}";
 
@@ -561,12 +570,12 @@ public class Upload {
             return null;
         }
 
-        byte[] bytes;
+        UploadSource source;
         File coverFile = new File(photo);
 
         if (coverFile.exists()) {
             try {
-                bytes = Utils.toByteArray(coverFile.toURI().toURL());
+                source = UploadSource.of(coverFile.toPath());
             } catch (IOException e) {
                 log.error("Cover file was exists, but IOException occurred: {}", e.toString());
                 return null;
@@ -576,14 +585,14 @@ public class Upload {
             URL coverUrl;
             try {
                 coverUrl = new URL(photo);
-                bytes = Utils.toByteArray(coverUrl);
+                source = UploadSource.of(coverUrl);
             } catch (IOException e) {
                 log.error("Bad string was provided to uploadPhotoToAlbum method: path to file or url was expected, but got this: {}, error: {}", photo, e.toString());
                 return null;
             }
         }
 
-        return uploadPhotoToAlbum(bytes, group_id, album_id);
+        return uploadPhotoToAlbum(source, group_id, album_id);
     }
 
     /**
@@ -594,36 +603,41 @@ public class Upload {
      */
 
     public String uploadPhotoToAlbum(byte[] photoBytes, int group_id, int album_id) {
-        if (photoBytes != null) {
+        return photoBytes != null ? uploadPhotoToAlbum(UploadSource.of(photoBytes, "photo"), group_id, album_id) : null;
+    }
+
+    /**
+     * @param photoSource bytes, file or url
+     * @param album_id album id
+     * @param group_id group id
+     * @return attachment
+     */
+    public String uploadPhotoToAlbum(UploadSource photoSource, int group_id, int album_id) {
+        if (photoSource != null) {
             JSONObject params_getMessagesUploadServer = new JSONObject().put("album_id", album_id);
 
             if (group_id != 0) {
                 params_getMessagesUploadServer.put("group_id", group_id);
             }
 
-            JSONObject response = api.callSync("photos.getUploadServer", params_getMessagesUploadServer);
-
-            if (response.toString().equalsIgnoreCase("false")) {
-                log.error("Can't get messages upload server, aborting. Photo wont be attached to message.");
-                return null;
-            }
-
-            String uploadUrl = new JSONObject(response.toString()).getString("upload_url");
-
             String mimeType;
 
             try {
-                mimeType = Utils.getMimeType(photoBytes);
+                mimeType = photoSource.getMimeType();
             } catch (IOException e) {
                 log.error(e.getMessage());
+                photoSource.close();
                 return null;
             }
 
             // Uploading the photo
-            String response_uploadFileString = Requests
-                    .post(uploadUrl)
-                    .multiPartBody(Part.file("photo", "image."+mimeType, photoBytes))
-                    .send().readToText();
+            String key = UploadServerCache.key("photos.getUploadServer", album_id, group_id);
+            String response_uploadFileString = upload("photos.getUploadServer", params_getMessagesUploadServer, key, "photo", "image."+mimeType, photoSource, accepts("photo"));
+
+            if (response_uploadFileString == null) {
+                log.error("Can't get messages upload server, aborting. Photo wont be attached to message.");
+                return null;
+            }
 
             if (response_uploadFileString.length() < 2 || response_uploadFileString.contains("error") || !response_uploadFileString.contains("photo")) {
                 log.error("Photo wan't uploaded: {}", response_uploadFileString);
@@ -691,12 +705,12 @@ public class Upload {
             }
         }
 
-        byte[] photoBytes;
+        UploadSource photoSource;
 
         switch (type) {
             case "fromFile": {
                 try {
-                    photoBytes = Files.readAllBytes(Paths.get(photoFile.toURI()));
+                    photoSource = UploadSource.of(photoFile.toPath());
                 } catch (IOException ignored) {
                     log.error("Error when reading file {}", photoFile.getAbsolutePath());
                     return null;
@@ -707,7 +721,7 @@ public class Upload {
 
             case "fromUrl": {
                 try {
-                    photoBytes = Utils.toByteArray(photoUrl);
+                    photoSource = UploadSource.of(photoUrl);
                 } catch (IOException e) {
                     log.error("Error {} occurred when reading URL {}", e.toString(), photo);
                     return null;
@@ -722,7 +736,7 @@ public class Upload {
             }
         }
 
-        return uploadPhoto(photoBytes, peerId);
+        return uploadPhoto(photoSource, peerId);
     }
 
     /**
@@ -733,32 +747,39 @@ public class Upload {
      * @return attachment
      */
     public String uploadPhoto(byte[] photoBytes, int peerId) {
-        if (photoBytes != null) {
-
-            // Getting of server for uploading the photo
-            JSONObject getUploadServerResponse = api.callSync("photos.getMessagesUploadServer", "peer_id", peerId);
-            var uploadUrl = (getUploadServerResponse.has("response")) ? (getUploadServerResponse.getJSONObject("response").has("upload_url")) ? getUploadServerResponse.getJSONObject("response").getString("upload_url") : null : null;
+        return photoBytes != null ? uploadPhoto(UploadSource.of(photoBytes, "photo"), peerId) : null;
+    }
 
-            // Some error
-            if (uploadUrl == null) {
-                log.error("No upload url in response: {}", getUploadServerResponse);
-                return null;
-            }
+    /**
+     * Synchronous adding photo to the message
+     *
+     * @param photoSource photo bytes, file or url
+     * @param peerId peer id
+     * @return attachment
+     */
+    public String uploadPhoto(UploadSource photoSource, int peerId) {
+        if (photoSource != null) {
 
             String mimeType;
 
             try {
-                mimeType = Utils.getMimeType(photoBytes);
+                mimeType = photoSource.getMimeType();
             } catch (IOException e) {
                 log.error(e.getMessage());
+                photoSource.close();
                 return null;
             }
 
-            // Uploading the photo
-            String uploadingOfPhotoResponseString = Requests
-                    .post(uploadUrl)
-                    .multiPartBody(Part.file("photo", "photo."+mimeType, photoBytes))
-                    .send().readToText();
+            // Getting of server and uploading the photo
+            JSONObject params = new JSONObject().put("peer_id", peerId);
+            String key = UploadServerCache.key("photos.getMessagesUploadServer", peerClass(peerId));
+            String uploadingOfPhotoResponseString = upload("photos.getMessagesUploadServer", params, key, "photo", "photo."+mimeType, photoSource, accepts("hash"));
+
+            // Some error
+            if (uploadingOfPhotoResponseString == null) {
+                log.error("No upload url in response of photos.getMessagesUploadServer");
+                return null;
+            }
 
             JSONObject uploadingOfPhotoResponse;
 
@@ -819,14 +840,12 @@ public class Upload {
             }
         }
 
-        byte[] docBytes;
-        String fileNameField;
+        UploadSource docSource;
 
         switch (type) {
             case "fromFile": {
                 try {
-                    docBytes = Files.readAllBytes(Paths.get(docFile.toURI()));
-                    fileNameField = docFile.getName();
+                    docSource = UploadSource.of(docFile.toPath());
                 } catch (IOException e) {
                     log.error("Error when reading file {}", docFile.getAbsolutePath());
                     return null;
@@ -837,13 +856,7 @@ public class Upload {
 
             case "fromUrl": {
                 try {
-                    URLConnection conn = docUrl.openConnection();
-                    try {
-                        docBytes = Utils.toByteArray(conn);
-                        fileNameField = Utils.guessFileNameByContentType(conn.getContentType());
-                    } finally {
-                        Utils.close(conn);
-                    }
+                    docSource = UploadSource.of(docUrl);
                 } catch (IOException e) {
                     log.error("Error {} occurred when reading URL {}", e.toString(), doc);
                     return null;
@@ -858,7 +871,7 @@ public class Upload {
             }
         }
 
-        return uploadDoc(docBytes, peerId, typeOfDoc, fileNameField);
+        return uploadDoc(docSource, peerId, typeOfDoc, docSource.getFileName());
     }
 
     /**
@@ -870,24 +883,35 @@ public class Upload {
      */
 
     public String uploadDoc(byte[] docBytes, int peerId, DocTypes typeOfDoc, String fileNameField) {
-        if (docBytes != null) {
+        if (docBytes == null) {
+            log.error("Got file or url of doc to be uploaded, but some error occured and readed 0 bytes.");
+            return null;
+        }
+
+        return uploadDoc(UploadSource.of(docBytes, fileNameField), peerId, typeOfDoc, fileNameField);
+    }
+
+    /**
+     * @param docSource bytes, file or url
+     * @param peerId peer id
+     * @param typeOfDoc Type of doc, 'audio_message' or 'graffiti' ('doc' as default)
+     * @param fileNameField file name field
+     * @return attachment
+     */
+    public String uploadDoc(UploadSource docSource, int peerId, DocTypes typeOfDoc, String fileNameField) {
+        if (docSource != null) {
 
-            // Getting of server for uploading the photo
-            JSONObject getUploadServerResponse = api.callSync("docs.getMessagesUploadServer", "peer_id", peerId, "type", typeOfDoc.getType());
-            String uploadUrl = (getUploadServerResponse.has("response")) ? (getUploadServerResponse.getJSONObject("response").has("upload_url")) ? getUploadServerResponse.getJSONObject("response").getString("upload_url") : null : null;
+            // Getting of server and uploading the doc
+            JSONObject params = new JSONObject().put("peer_id", peerId).put("type", typeOfDoc.getType());
+            String key = UploadServerCache.key("docs.getMessagesUploadServer", typeOfDoc.getType(), peerClass(peerId));
+            String uploadingOfDocResponseString = upload("docs.getMessagesUploadServer", params, key, "file", fileNameField, docSource, accepts("file"));
 
             // Some error
-            if (uploadUrl == null) {
-                log.error("No upload url in response: {}", getUploadServerResponse);
+            if (uploadingOfDocResponseString == null) {
+                log.error("No upload url in response of docs.getMessagesUploadServer");
                 return null;
             }
 
-            // Uploading the photo
-            String uploadingOfDocResponseString = Requests
-                    .post(uploadUrl)
-                    .multiPartBody(Part.file("file", fileNameField, docBytes))
-                    .send().readToText();
-
             JSONObject uploadingOfDocResponse;
 
             try {
@@ -918,4 +942,163 @@ public class Upload {
 
         return null;
     }
+
+    /* Upload servers */
+
+    /**
+     * Get upload server from cache or from VK, and send file to it.
+     * If upload server rejected cached url, url is got from VK again and file is sent once more.
+     * Content of url can be sent only once, so it is always sent to new upload server.
+     *
+     * @param method   Method that returns upload server
+     * @param params   Params of method
+     * @param key      Key of upload server in cache
+     * @param field    Name of field of file
+     * @param fileName Name of file
+     * @param source   Content of file
+     * @param accepted Returns true if upload server accepted file
+     * @param callback Response of upload server, or null if upload server was not got or file was not sent
+     */
+    private void uploadAsync(String method, JSONObject params, String key, String field, String fileName, UploadSource source, Predicate<String> accepted, Callback<String> callback) {
+        String cached = source.isRepeatable() ? client.uploadServers().get(key) : null;
+
+        if (cached != null) {
+            try {
+                client.runtime().service().execute(() -> {
+                    String response = postToCached(cached, key, field, fileName, source, accepted);
+
+                    if (response != null) {
+                        callback.onResult(response);
+                        return;
+                    }
+
+                    api.call(method, params, server -> postToNew(server, key, field, fileName, source, callback));
+                });
+            } catch (RejectedExecutionException e) {
+                log.error("Pool of client is full or stopped, file {} is not uploaded", fileName);
+                callback.onResult(null);
+            }
+            return;
+        }
+
+        api.call(method, params, server -> postToNew(server, key, field, fileName, source, callback));
+    }
+
+    /**
+     * Sync version of {@link #uploadAsync}
+     *
+     * @return response of upload server, or null if upload server was not got or file was not sent
+     */
+    private String upload(String method, JSONObject params, String key, String field, String fileName, UploadSource source, Predicate<String> accepted) {
+        String cached = source.isRepeatable() ? client.uploadServers().get(key) : null;
+
+        if (cached != null) {
+            String response = postToCached(cached, key, field, fileName, source, accepted);
+
+            if (response != null) {
+                return response;
+            }
+        }
+
+        return postToNew(api.callSync(method, params), key, field, fileName, source);
+    }
+
+    /**
+     * @param source Content that can be sent again
+     * @return response of upload server, or null if server rejected file
+     */
+    private String postToCached(String url, String key, String field, String fileName, UploadSource source, Predicate<String> accepted) {
+        String response;
+
+        try {
+            response = client.transport().postMultipart(url, field, fileName, source);
+        } catch (UncheckedIOException e) {
+            response = null;
+        }
+
+        if (response != null && accepted.test(response)) {
+            return response;
+        }
+
+        log.error("Upload server rejected cached url, getting new one: {}", response);
+        client.uploadServers().invalidate(key, url);
+
+        return null;
+    }
+
+    /**
+     * Async version of {@link #postToNew(Object, String, String, String, UploadSource)}:
+     * file is sent in pool of client, so long uploads do not block pool of API requests
+     */
+    private void postToNew(Object server, String key, String field, String fileName, UploadSource source, Callback<String> callback) {
+        try {
+            client.runtime().service().execute(() -> callback.onResult(postToNew(server, key, field, fileName, source)));
+        } catch (RejectedExecutionException e) {
+            log.error("Pool of client is full or stopped, file {} is not uploaded", fileName);
+            source.close();
+            callback.onResult(null);
+        }
+    }
+
+    /**
+     * @param server Response of method that returns upload server
+     * @return response of upload server, or null if there is no upload url or file was not sent
+     */
+    private String postToNew(Object server, String key, String field, String fileName, UploadSource source) {
+        String url = uploadUrl(server);
+
+        if (url == null) {
+            log.error("No upload url in response: {}", server);
+            source.close();
+            return null;
+        }
+
+        client.uploadServers().put(key, url);
+
+        try {
+            return client.transport().postMultipart(url, field, fileName, source);
+        } catch (UncheckedIOException e) {
+            log.error("File {} is not uploaded: {}", fileName, e.toString());
+            source.close();
+            client.uploadServers().invalidate(key, url);
+            return null;
+        }
+    }
+
+    /**
+     * @param response Response of method: {upload_url}, {response: {upload_url}} or false
+     * @return upload url or null
+     */
+    private static String uploadUrl(Object response) {
+        if (response == null || response.toString().equalsIgnoreCase("false")) {
+            return null;
+        }
+
+        try {
+            JSONObject json = new JSONObject(response.toString());
+
+            if (json.optJSONObject("response") != null) {
+                json = json.getJSONObject("response");
+            }
+
+            return json.has("upload_url") ? json.getString("upload_url") : null;
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param field Field that response of upload server must contain
+     * @return check of response of upload server
+     */
+    private static Predicate<String> accepts(String field) {
+        return response -> response.length() >= 2 && !response.contains("error") && response.contains(field);
+    }
+
+    /**
+     * Upload servers of messages are reused for peers of the same kind
+     */
+    private static String peerClass(int peerId) {
+        return peerId > Chat.CHAT_PREFIX ? "chat" : peerId < 0 ? "group" : "user";
+    }
 }
@@ -0,0 +1,113 @@
+package com.github.stormbit.sdk.utils.vkapi;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Urls of upload servers that were got from VK, so they are reused
+ * by next uploads of the same kind instead of calling 'getUploadServer' again
+ * <p>
+ * Url is kept for limited time, and least recently used urls are removed
+ * when there are too many of them.
+ */
+@SuppressWarnings("unused")
+public class UploadServerCache {
+
+    private final long ttlNanos;
+    private final int maxSize;
+
+    private final LinkedHashMap<String, CachedUrl> entries;
+
+    private static final class CachedUrl {
+        private final String url;
+        private final long expiresAt;
+
+        private CachedUrl(String url, long expiresAt) {
+            this.url = url;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Urls are kept for 10 minutes, up to 256 urls
+     */
+    public UploadServerCache() {
+        this(TimeUnit.MINUTES.toMillis(10), 256);
+    }
+
+    /**
+     * @param ttlMillis For how long url is reused
+     * @param maxSize   Max count of urls
+     */
+    public UploadServerCache(long ttlMillis, int maxSize) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<String, CachedUrl>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedUrl> eldest) {
+                return size() > UploadServerCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * @param key Kind of upload, see {@link #key(String, Object...)}
+     * @return url, or null if there is no url or it is expired
+     */
+    public synchronized String get(String key) {
+        CachedUrl entry = entries.get(key);
+
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.expiresAt - System.nanoTime() <= 0) {
+            entries.remove(key);
+            return null;
+        }
+
+        return entry.url;
+    }
+
+    public synchronized void put(String key, String url) {
+        entries.put(key, new CachedUrl(url, System.nanoTime() + ttlNanos));
+    }
+
+    /**
+     * Remove url that upload server rejected
+     *
+     * @param key Kind of upload
+     * @param url Rejected url, url is not removed if it was already replaced with other one
+     */
+    public synchronized void invalidate(String key, String url) {
+        CachedUrl entry = entries.get(key);
+
+        if (entry != null && entry.url.equals(url)) {
+            entries.remove(key);
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @param method Method that returns upload server
+     * @param parts  Params that upload server depends on
+     * @return key of cache: 'method:part1:part2...'
+     */
+    public static String key(String method, Object... parts) {
+        StringBuilder key = new StringBuilder(method);
+
+        for (Object part : parts) {
+            key.append(':').append(part);
+        }
+
+        return key.toString();
+    }
+}
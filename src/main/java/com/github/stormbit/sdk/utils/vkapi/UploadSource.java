@@ -0,0 +1,158 @@
+package com.github.stormbit.sdk.utils.vkapi;
+
+import com.github.stormbit.sdk.utils.Utils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Content of file to be uploaded: bytes, file on disk or url
+ * <p>
+ * Files and urls are not read into memory: content is read by small parts
+ * while request is sent, and only first bytes are read to find type of file.
+ */
+@SuppressWarnings("unused")
+public final class UploadSource implements Closeable {
+
+    /**
+     * Enough bytes to find type of file
+     */
+    private static final int HEAD_SIZE = 16;
+
+    private final String fileName;
+    private final long length;
+    private final byte[] head;
+
+    private final Opener opener;
+    private volatile InputStream opened;
+
+    /**
+     * False for url, content of which can be read only once
+     */
+    private boolean repeatable = true;
+
+    private interface Opener {
+        InputStream open() throws IOException;
+    }
+
+    private UploadSource(String fileName, long length, byte[] head, Opener opener) {
+        this.fileName = fileName;
+        this.length = length;
+        this.head = head;
+        this.opener = opener;
+    }
+
+    /**
+     * @param bytes    Content of file
+     * @param fileName Name of file
+     * @return source
+     */
+    public static UploadSource of(byte[] bytes, String fileName) {
+        return new UploadSource(fileName, bytes.length, Arrays.copyOf(bytes, Math.min(HEAD_SIZE, bytes.length)), () -> new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * @param path File on disk
+     * @return source
+     * @throws IOException if file can't be read
+     */
+    public static UploadSource of(Path path) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(HEAD_SIZE);
+        long size;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            size = channel.size();
+
+            while (head.hasRemaining() && channel.read(head) > 0) {
+                // Reading first bytes
+            }
+        }
+
+        return new UploadSource(path.getFileName().toString(), size, Arrays.copyOf(head.array(), head.position()),
+                () -> Channels.newInputStream(FileChannel.open(path, StandardOpenOption.READ)));
+    }
+
+    /**
+     * Connection is opened at once and content is read when it is uploaded,
+     * so source of url can be uploaded only once
+     *
+     * @param url Url of file
+     * @return source
+     * @throws IOException if url can't be opened
+     */
+    public static UploadSource of(URL url) throws IOException {
+        URLConnection conn = url.openConnection();
+        InputStream stream = new BufferedInputStream(conn.getInputStream());
+
+        stream.mark(HEAD_SIZE);
+        byte[] head = stream.readNBytes(HEAD_SIZE);
+        stream.reset();
+
+        String contentType = conn.getContentType();
+        String fileName = contentType != null ? Utils.guessFileNameByContentType(contentType) : "file";
+
+        UploadSource source = new UploadSource(fileName, conn.getContentLengthLong(), head, () -> stream);
+        source.opened = stream;
+        source.repeatable = false;
+
+        return source;
+    }
+
+    /**
+     * @return new stream of content; for url the same stream every time
+     * @throws IOException if content can't be read
+     */
+    public InputStream openStream() throws IOException {
+        InputStream stream = opener.open();
+        opened = stream;
+
+        return stream;
+    }
+
+    /**
+     * @return extension by first bytes of content: jpg, png, gif, ...
+     * @throws IOException if type is unknown
+     */
+    public String getMimeType() throws IOException {
+        return Utils.getMimeType(head);
+    }
+
+    /**
+     * @return true if content can be sent again, for example to other upload server
+     */
+    public boolean isRepeatable() {
+        return repeatable;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return size of content, or -1 if it is unknown
+     */
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public void close() {
+        Utils.closeQuietly(opened);
+    }
+
+    @Override
+    public String toString() {
+        return fileName + " (" + length + " bytes)";
+    }
+}
@@ -6,6 +6,7 @@ import com.github.stormbit.sdk.utils.Utils;
 import com.github.stormbit.sdk.utils.vkapi.API;
 import com.github.stormbit.sdk.utils.vkapi.calls.CallAsync;
 import com.github.stormbit.sdk.utils.vkapi.executors.ExecutorGroup;
+import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.HashMap;
@@ -36,42 +37,11 @@ public class APIGroup extends API {
     public void call(String method, Object params, Callback<Object> callback) {
 
         try {
-            JSONObject parameters = new JSONObject();
+            JSONObject parameters = parseParams(params);
 
-            if (params != null) {
-                boolean good = false;
-
-                // Work with map
-                if (params instanceof Map) {
-
-                    parameters = new JSONObject((Map) params);
-                    good = true;
-                }
-
-                // with JO
-                if (params instanceof JSONObject) {
-                    parameters = (JSONObject) params;
-                    good = true;
-                }
-
-                // or string
-                if (params instanceof String) {
-                    String s = params.toString();
-                    if (s.startsWith("{")) {
-                        parameters = new JSONObject(s);
-                        good = true;
-                    } else {
-                        if (s.contains("&") && s.contains("=")) {
-                            parameters = Utils.explodeQuery(s);
-                            good = true;
-                        }
-                    }
-                }
-
-                if (good) {
-                    CallAsync call = new CallAsync(method, parameters, callback);
-                    executor.execute(call);
-                }
+            if (parameters != null) {
+                CallAsync call = new CallAsync(method, parameters, callback);
+                executor.execute(call);
             }
         } catch (Exception e) {
             LOG.error("Some error occurred when calling VK API method {} with params {}, error is {}", method, params.toString(), e.getMessage());
@@ -123,66 +93,36 @@ public class APIGroup extends API {
      */
     public JSONObject callSync(String method, Object params) {
 
-        try {
-            JSONObject parameters = new JSONObject();
-
-            if (params != null) {
-                boolean good = false;
-
-                // Work with map
-                if (params instanceof Map) {
-
-                    parameters = new JSONObject((Map) params);
-                    good = true;
-                }
-
-                // with JO
-                if (params instanceof JSONObject) {
-                    parameters = (JSONObject) params;
-                    good = true;
-                }
+        return withRetries(method, params, token -> {
+            JSONObject parameters;
 
-                // or string
-                if (params instanceof String) {
-                    String s = params.toString();
-                    if (s.startsWith("{")) {
-                        parameters = new JSONObject(s);
-                        good = true;
-                    } else {
-                        if (s.contains("&") && s.contains("=")) {
-                            parameters = Utils.explodeQuery(s);
-                            good = true;
-                        }
-                    }
-                }
-
-                if (good) {
+            try {
+                parameters = parseParams(params);
+            } catch (JSONException e) {
+                parameters = null;
+            }
 
-                    JSONObject data = new JSONObject();
-                    data.put("v", Utils.version);
-                    data.put("access_token", client.getToken());
+            if (parameters == null) {
+                throw new IllegalArgumentException("Bad params of method " + method + ": " + params);
+            }
 
-                    for (String key : parameters.keySet()) {
-                        data.put(key, parameters.get(key));
-                    }
+            JSONObject data = new JSONObject();
+            data.put("v", Utils.version);
+            data.put("access_token", token.getKey());
 
-                    Map<String, Object> prms = new HashMap<>();
-                    for (String key : data.keySet()) {
-                        prms.put(key, data.get(key));
-                    }
+            for (String key : parameters.keySet()) {
+                data.put(key, parameters.get(key));
+            }
 
-                    String responseString = client.auth().session.post("https://api.vk.com/method/" + method)
-                            .body(prms)
-                            .send().readToText().replaceAll("[<!>]", "");
+            Map<String, Object> prms = new HashMap<>();
+            for (String key : data.keySet()) {
+                prms.put(key, data.get(key));
+            }
 
-                    return new JSONObject(responseString);
-                }
+            String responseString = client.transport().post("https://api.vk.com/method/" + method, prms).replaceAll("[<!>]", "");
 
-            }
-        } catch (Exception e) {
-            LOG.error("Some error occurred when calling VK API: {}", e.getMessage());
-        }
-        return new JSONObject();
+            return new JSONObject(responseString);
+        });
     }
 
     /**
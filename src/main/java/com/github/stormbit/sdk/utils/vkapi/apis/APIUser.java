@@ -6,6 +6,7 @@ import com.github.stormbit.sdk.utils.Utils;
 import com.github.stormbit.sdk.utils.vkapi.API;
 import com.github.stormbit.sdk.utils.vkapi.calls.CallAsync;
 import com.github.stormbit.sdk.utils.vkapi.executors.ExecutorUser;
+import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.HashMap;
@@ -18,45 +19,16 @@ import java.util.Map;
 public class APIUser extends API {
 
     public APIUser(Client client) {
-        super(client, new ExecutorUser(client.auth()));
+        super(client, new ExecutorUser(client, client.auth()));
     }
 
     @Override
     public void call(String method, Object params, Callback<Object> callback) {
 
         try {
-            JSONObject parameters = new JSONObject();
+            JSONObject parameters = parseParams(params);
 
-            boolean good = false;
-
-            // Work with map
-            if (params instanceof Map) {
-
-                parameters = new JSONObject((Map) params);
-                good = true;
-            }
-
-            // with JO
-            if (params instanceof JSONObject) {
-                parameters = (JSONObject) params;
-                good = true;
-            }
-
-            // or string
-            if (params instanceof String) {
-                String s = params.toString();
-                if (s.startsWith("{")) {
-                    parameters = new JSONObject(s);
-                    good = true;
-                } else {
-                    if (s.contains("&") && s.contains("=")) {
-                        parameters = Utils.explodeQuery(s);
-                        good = true;
-                    }
-                }
-            }
-
-            if (good) {
+            if (parameters != null) {
                 CallAsync call = new CallAsync(method, parameters, callback);
                 executor.execute(call);
             }
@@ -97,73 +69,45 @@ public class APIUser extends API {
     @Override
     public JSONObject callSync(String method, Object params) {
 
-        try {
-            JSONObject parameters = new JSONObject();
-
-            if (params != null) {
-                boolean good = false;
-
-                // Work with map
-                if (params instanceof Map) {
-
-                    parameters = new JSONObject((Map) params);
-                    good = true;
-                }
-
-                // with JO
-                if (params instanceof JSONObject) {
-                    parameters = (JSONObject) params;
-                    good = true;
-                }
-
-                // or string
-                if (params instanceof String) {
-                    String s = params.toString();
-                    if (s.startsWith("{")) {
-                        parameters = new JSONObject(s);
-                        good = true;
-                    } else {
-                        if (s.contains("&") && s.contains("=")) {
-                            parameters = Utils.explodeQuery(s);
-                            good = true;
-                        }
-                    }
-                }
+        return withRetries(method, params, token -> {
+            JSONObject parameters;
 
-                if (good) {
+            try {
+                parameters = parseParams(params);
+            } catch (JSONException e) {
+                parameters = null;
+            }
 
-                    if (!Utils._hashes.has(method)) {
-                        Utils.get_hash(client.auth(), method);
-                    }
+            if (parameters == null) {
+                throw new IllegalArgumentException("Bad params of method " + method + ": " + params);
+            }
 
-                    JSONObject data = new JSONObject();
-                    data.put("act", "a_run_method");
-                    data.put("al", 1);
-                    data.put("hash", Utils._hashes.get(method));
-                    data.put("method", method);
-                    data.put("param_v", Utils.version);
+            if (!Utils._hashes.has(method)) {
+                Utils.get_hash(client.auth(), method);
+            }
 
-                    for (String key : parameters.keySet()) {
-                        data.put("param_" + key, parameters.get(key));
-                    }
+            JSONObject data = new JSONObject();
+            data.put("act", "a_run_method");
+            data.put("al", 1);
+            data.put("hash", Utils._hashes.get(method));
+            data.put("method", method);
+            data.put("param_v", Utils.version);
 
-                    Map<String, Object> prms = new HashMap<>();
-                    for (String key : data.keySet()) {
-                        prms.put(key, data.get(key));
-                    }
+            for (String key : parameters.keySet()) {
+                data.put("param_" + key, parameters.get(key));
+            }
 
-                    String responseString = client.auth().session.post(Utils.URL)
-                            .body(prms)
-                            .send().readToText().replaceAll("[<!>]", "").substring(2);
+            Map<String, Object> prms = new HashMap<>();
+            for (String key : data.keySet()) {
+                prms.put(key, data.get(key));
+            }
 
-                    return new JSONObject(new JSONObject(responseString).getJSONArray("payload").getJSONArray(1).getString(0));
-                }
+            String responseString = client.auth().session.post(Utils.URL)
+                    .body(prms)
+                    .send().readToText().replaceAll("[<!>]", "").substring(2);
 
-            }
-        } catch (Exception e) {
-            LOG.error("Some error occurred when calling VK API: {}", e.getMessage());
-        }
-        return new JSONObject();
+            return new JSONObject(new JSONObject(responseString).getJSONArray("payload").getJSONArray(1).getString(0));
+        });
     }
 
     @Override
@@ -1,7 +1,10 @@
 package com.github.stormbit.sdk.utils.vkapi.calls;
 
 import com.github.stormbit.sdk.callbacks.Callback;
+import com.github.stormbit.sdk.exceptions.VkApiException;
 import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.Objects;
 
@@ -10,7 +13,55 @@ import java.util.Objects;
  */
 public class CallAsync extends Call {
 
+    private static final Logger LOG = LoggerFactory.getLogger(CallAsync.class);
+
+    /**
+     * Class of call: calls of higher priority take more places in every 'execute' request
+     */
+    public enum Priority {
+
+        /**
+         * Calls that user is waiting for right now: typing, replies to commands
+         */
+        REALTIME(16),
+
+        /**
+         * All calls by default
+         */
+        NORMAL(6),
+
+        /**
+         * Mailings and other background work
+         */
+        BULK(3);
+
+        private final int weight;
+
+        Priority(int weight) {
+            this.weight = weight;
+        }
+
+        /**
+         * @return places of 25 in 'execute' request when there are calls of all priorities
+         */
+        public int getWeight() {
+            return weight;
+        }
+    }
+
     private Callback<Object> callback;
+    private Callback<VkApiException> errorCallback;
+    private Priority priority = Priority.NORMAL;
+
+    /**
+     * True if call can be run twice, so it is sent again after network errors and bad responses
+     */
+    private volatile boolean repeatable = false;
+
+    /**
+     * Count of failed attempts of call
+     */
+    private int failed = 0;
 
     public CallAsync(String methodName, JSONObject params, Callback<Object> callback) {
         this.methodName = methodName;
@@ -18,10 +69,107 @@ public class CallAsync extends Call {
         this.callback = callback;
     }
 
+    /**
+     * @param methodName    Method name
+     * @param params        Params
+     * @param callback      Callback to return the response
+     * @param errorCallback Callback to return the error
+     */
+    public CallAsync(String methodName, JSONObject params, Callback<Object> callback, Callback<VkApiException> errorCallback) {
+        this(methodName, params, callback);
+        this.errorCallback = errorCallback;
+    }
+
+    /**
+     * @param methodName    Method name
+     * @param params        Params
+     * @param priority      Priority of call
+     * @param callback      Callback to return the response
+     * @param errorCallback Callback to return the error, or null to return 'false' to callback
+     */
+    public CallAsync(String methodName, JSONObject params, Priority priority, Callback<Object> callback, Callback<VkApiException> errorCallback) {
+        this(methodName, params, callback, errorCallback);
+        this.priority = priority;
+    }
+
     public Callback<Object> getCallback() {
         return callback;
     }
 
+    public Callback<VkApiException> getErrorCallback() {
+        return errorCallback;
+    }
+
+    public Priority getPriority() {
+        return priority;
+    }
+
+    public CallAsync setPriority(Priority priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    public boolean isRepeatable() {
+        return repeatable;
+    }
+
+    /**
+     * @param repeatable true if VK can run call twice without harm, so it is sent again
+     *                   after network errors and bad responses. Read methods and calls with 'random_id' are sent again anyway.
+     * @return this
+     */
+    public CallAsync setRepeatable(boolean repeatable) {
+        this.repeatable = repeatable;
+        return this;
+    }
+
+    /**
+     * Attempt of call failed
+     *
+     * @return count of failed attempts
+     */
+    public synchronized int onFailedAttempt() {
+        return ++failed;
+    }
+
+    public synchronized int getFailedAttempts() {
+        return failed;
+    }
+
+    /**
+     * Return the result of call to callback.
+     * Error thrown by callback is only logged, so it does not affect other calls of the same request.
+     *
+     * @param result result
+     */
+    public void onResult(Object result) {
+        try {
+            callback.onResult(result);
+        } catch (Exception e) {
+            LOG.error("Some error occurred in callback of method {}: {}", methodName, e.toString());
+        }
+    }
+
+    /**
+     * Return the error of call to error callback,
+     * or 'false' to callback if there is no error callback.
+     * Error thrown by callback is only logged.
+     *
+     * @param error error
+     */
+    public void onError(VkApiException error) {
+        if (errorCallback == null) {
+            onResult("false");
+            return;
+        }
+
+        try {
+            errorCallback.onResult(error);
+        } catch (Exception e) {
+            LOG.error("Some error occurred in error callback of method {}: {}", methodName, e.toString());
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -31,4 +179,4 @@ public class CallAsync extends Call {
                 Objects.equals(getParams().toMap(), call.getParams().toMap()) &&
                 Objects.equals(getCallback(), call.getCallback());
     }
-}
\ No newline at end of file
+}
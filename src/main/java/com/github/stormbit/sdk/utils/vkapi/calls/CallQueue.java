@@ -0,0 +1,236 @@
+package com.github.stormbit.sdk.utils.vkapi.calls;
+
+import com.github.stormbit.sdk.exceptions.VkApiException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded lock-free queue of calls for executor.
+ * <p>
+ * Many threads can put calls at the same time, and only executor thread takes them.
+ * Every slot of ring has own sequence number, so producers and consumer
+ * do not need any locks: only one CAS on the head or tail of the queue.
+ * <p>
+ * See more: <a href="http://www.1024cores.net/home/lock-free-algorithms/queues/bounded-mpmc-queue">link</a>
+ */
+public class CallQueue {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CallQueue.class);
+
+    /**
+     * What to do with new call when queue is full
+     */
+    public enum Overflow {
+
+        /**
+         * Wait until executor takes calls from queue
+         */
+        BLOCK,
+
+        /**
+         * Reject new call
+         */
+        FAIL_FAST,
+
+        /**
+         * Reject the oldest call in queue and put the new one
+         */
+        DROP_OLDEST
+    }
+
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AtomicReferenceArray<CallAsync> buffer;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    private volatile Overflow overflow;
+
+    /**
+     * Thread that drains the queue, it must not wait for itself when queue is full
+     */
+    private volatile Thread consumer;
+
+    /**
+     * @param capacity Max count of calls in queue, will be rounded up to power of two
+     * @param overflow What to do with new call when queue is full
+     */
+    public CallQueue(int capacity, Overflow overflow) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Capacity of queue must be at least 2, but got " + capacity);
+        }
+
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        this.overflow = overflow;
+
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Put call to the queue respecting overflow policy
+     *
+     * @param call Call to be executed
+     * @return false if call was rejected
+     */
+    public boolean put(CallAsync call) {
+
+        if (offer(call)) {
+            return true;
+        }
+
+        switch (overflow) {
+
+            case BLOCK: {
+                if (Thread.currentThread() == consumer) {
+                    LOG.error("Queue of calls is full, and executor thread can not wait for itself, call rejected: {}", call);
+                    return false;
+                }
+
+                long park = 1000;
+
+                while (!offer(call)) {
+                    LockSupport.parkNanos(park);
+                    park = Math.min(park << 1, MAX_PARK_NANOS);
+
+                    if (Thread.currentThread().isInterrupted()) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            case DROP_OLDEST: {
+                while (!offer(call)) {
+                    CallAsync dropped = poll();
+
+                    if (dropped != null) {
+                        LOG.error("Queue of calls is full, the oldest call dropped: {}", dropped);
+                        dropped.onError(new VkApiException(VkApiException.UNKNOWN, "Queue of calls is full", dropped.getMethodName()));
+                    }
+                }
+                return true;
+            }
+
+            default: {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Put call to the queue if there is free slot
+     *
+     * @param call Call to be executed
+     * @return false if queue is full
+     */
+    public boolean offer(CallAsync call) {
+        long pos = tail.get();
+
+        while (true) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    buffer.set(index, call);
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Take the first call from queue
+     *
+     * @return call or null if queue is empty
+     */
+    public CallAsync poll() {
+        long pos = head.get();
+
+        while (true) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - (pos + 1);
+
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    CallAsync call = buffer.get(index);
+                    buffer.set(index, null);
+                    sequences.set(index, pos + mask + 1);
+                    return call;
+                }
+                pos = head.get();
+            } else if (diff < 0) {
+                return null;
+            } else {
+                pos = head.get();
+            }
+        }
+    }
+
+    /**
+     * Take up to max calls from queue
+     *
+     * @param calls Collection to put calls in
+     * @param max   Max count of calls to take
+     * @return count of taken calls
+     */
+    public int drainTo(Collection<CallAsync> calls, int max) {
+        consumer = Thread.currentThread();
+
+        int count = 0;
+        CallAsync call;
+
+        while (count < max && (call = poll()) != null) {
+            calls.add(call);
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * @return approximate count of calls in queue
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, mask + 1));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    public Overflow getOverflow() {
+        return overflow;
+    }
+
+    public void setOverflow(Overflow overflow) {
+        this.overflow = overflow;
+    }
+}
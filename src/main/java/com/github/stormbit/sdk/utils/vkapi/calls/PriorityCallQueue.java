@@ -0,0 +1,123 @@
+package com.github.stormbit.sdk.utils.vkapi.calls;
+
+import java.util.Collection;
+
+/**
+ * Queue of calls with own lane for every priority.
+ * <p>
+ * Every batch taken from queue is filled by weights of priorities:
+ * when all lanes have calls, batch of 25 has 16 realtime, 6 normal and 3 bulk calls,
+ * so realtime calls wait only for a few batches and bulk calls are still sent.
+ * Places that are not needed by one lane are given to others in order of priority.
+ * Every lane has its own capacity, so full lane of bulk calls does not block realtime calls.
+ */
+public class PriorityCallQueue {
+
+    private static final CallAsync.Priority[] PRIORITIES = CallAsync.Priority.values();
+
+    private final CallQueue[] lanes = new CallQueue[PRIORITIES.length];
+
+    /**
+     * @param capacity Max count of calls in every lane
+     * @param overflow What to do with new call when its lane is full
+     */
+    public PriorityCallQueue(int capacity, CallQueue.Overflow overflow) {
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new CallQueue(capacity, overflow);
+        }
+    }
+
+    /**
+     * Put call to lane of its priority respecting overflow policy
+     *
+     * @param call Call to be executed
+     * @return false if call was rejected
+     */
+    public boolean put(CallAsync call) {
+        return lane(call.getPriority()).put(call);
+    }
+
+    /**
+     * Take up to max calls from lanes by their weights
+     *
+     * @param calls Collection to put calls in
+     * @param max   Max count of calls to take
+     * @return count of taken calls
+     */
+    public int drainTo(Collection<CallAsync> calls, int max) {
+        int weights = 0;
+
+        for (CallAsync.Priority priority : PRIORITIES) {
+            if (!lane(priority).isEmpty()) weights += priority.getWeight();
+        }
+
+        if (weights == 0) {
+            return 0;
+        }
+
+        int count = 0;
+
+        for (CallAsync.Priority priority : PRIORITIES) {
+            CallQueue lane = lane(priority);
+
+            if (count < max && !lane.isEmpty()) {
+                int share = Math.max(1, max * priority.getWeight() / weights);
+                count += lane.drainTo(calls, Math.min(share, max - count));
+            }
+        }
+
+        for (CallAsync.Priority priority : PRIORITIES) {
+            if (count >= max) break;
+
+            count += lane(priority).drainTo(calls, max - count);
+        }
+
+        return count;
+    }
+
+    /**
+     * @param priority Priority of calls
+     * @return lane of calls of this priority
+     */
+    public CallQueue lane(CallAsync.Priority priority) {
+        return lanes[priority.ordinal()];
+    }
+
+    /**
+     * @return approximate count of calls in all lanes
+     */
+    public int size() {
+        int size = 0;
+
+        for (CallQueue lane : lanes) {
+            size += lane.size();
+        }
+
+        return size;
+    }
+
+    public boolean isEmpty() {
+        for (CallQueue lane : lanes) {
+            if (!lane.isEmpty()) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return max count of calls in every lane
+     */
+    public int capacity() {
+        return lanes[0].capacity();
+    }
+
+    public CallQueue.Overflow getOverflow() {
+        return lanes[0].getOverflow();
+    }
+
+    public void setOverflow(CallQueue.Overflow overflow) {
+        for (CallQueue lane : lanes) {
+            lane.setOverflow(overflow);
+        }
+    }
+}
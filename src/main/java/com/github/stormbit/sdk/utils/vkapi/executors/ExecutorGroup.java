@@ -1,15 +1,17 @@
 package com.github.stormbit.sdk.utils.vkapi.executors;
 
 import com.github.stormbit.sdk.clients.Client;
+import com.github.stormbit.sdk.exceptions.VkApiException;
 import com.github.stormbit.sdk.utils.Utils;
 import com.github.stormbit.sdk.utils.vkapi.Auth;
 import com.github.stormbit.sdk.utils.vkapi.Executor;
+import com.github.stormbit.sdk.utils.vkapi.RateLimiter;
+import com.github.stormbit.sdk.utils.vkapi.TokenPool;
 import com.github.stormbit.sdk.utils.vkapi.calls.CallAsync;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.*;
-import java.util.stream.IntStream;
 
 /**
  * Created by Storm-bit
@@ -19,72 +21,37 @@ public class ExecutorGroup extends Executor {
     private Client client;
 
     public ExecutorGroup(Client client, Auth auth) {
-        super(auth);
+        super(auth, new TokenPool(client.getTokens(), RateLimiter.GROUP_LIMIT), client.runtime());
         this.client = client;
     }
 
     @Override
-    protected void executing() {
+    protected void executing(List<CallAsync> tmpQueue, TokenPool.Token token) {
 
-        List<CallAsync> tmpQueue = new ArrayList<>();
-        int count = 0;
+        String code = codeForExecute(tmpQueue);
 
-        for (Iterator<CallAsync> iterator = queue.iterator(); iterator.hasNext() && count < 25; count++) {
-            tmpQueue.add(iterator.next());
-        }
-
-        if (!tmpQueue.isEmpty()) {
-            for (CallAsync item : tmpQueue) {
-                String method = item.getMethodName();
-                JSONObject params = item.getParams();
-
-                queue.removeAll(tmpQueue);
-
-                JSONObject data = new JSONObject();
-                data.put("v", Utils.version);
-                data.put("access_token", client.getToken());
-
-                for (String key : params.keySet()) {
-                    data.put(key, params.get(key));
-                }
-
-                Map<String, Object> prms = new HashMap<>();
-                for (String key : data.keySet()) {
-                    prms.put(key, data.get(key));
-                }
+        Map<String, Object> prms = new HashMap<>();
+        prms.put("v", Utils.version);
+        prms.put("access_token", token.getKey());
+        prms.put("code", code);
 
-                // Execute
-                if (count > 0) {
+        // Execute
+        String responseString = client.transport().post("https://api.vk.com/method/execute", prms).replaceAll("[<!>]", "");
 
-                    String responseString = _auth.session.post("https://api.vk.com/method/" + method)
-                            .body(prms)
-                            .send().readToText().replaceAll("[<!>]", "");
-
-                    if (LOG_REQUESTS) {
-                        LOG.error("New executing request response: {}", responseString);
-                    }
-
-                    JSONObject response;
-
-                    try {
-                        response = new JSONObject(responseString);
-                    } catch (JSONException e) {
-                        tmpQueue.forEach(call -> call.getCallback().onResult("false"));
-                        LOG.error("Bad response from executing: {}, params: {}", responseString, data.toString());
-                        return;
-                    }
-
-                    if (!response.has("response")) {
-                        LOG.error("No 'response' object when executing code, VK response: {}", response);
-                        tmpQueue.forEach(call -> call.getCallback().onResult("false"));
-                        return;
-                    }
+        if (LOG_REQUESTS) {
+            LOG.error("New executing request response: {}", responseString);
+        }
 
-                    Object responses = response.get("response");
+        JSONObject response;
 
-                    IntStream.range(0, count).forEachOrdered(i -> tmpQueue.get(i).getCallback().onResult(responses));
-                }
-            }
+        try {
+            response = new JSONObject(responseString);
+        } catch (JSONException e) {
+            LOG.error("Bad response from executing: {}, code: {}", responseString, code);
+            tmpQueue.forEach(call -> retryOrFail(call, new VkApiException(VkApiException.BAD_RESPONSE, "Bad response: " + responseString, call.getMethodName())));
+            return;
         }
+
+        handleResponses(tmpQueue, response, token);
     }
 }
@@ -1,14 +1,17 @@
 package com.github.stormbit.sdk.utils.vkapi.executors;
 
+import com.github.stormbit.sdk.clients.Client;
+import com.github.stormbit.sdk.exceptions.VkApiException;
 import com.github.stormbit.sdk.utils.Utils;
 import com.github.stormbit.sdk.utils.vkapi.Auth;
 import com.github.stormbit.sdk.utils.vkapi.Executor;
+import com.github.stormbit.sdk.utils.vkapi.RateLimiter;
+import com.github.stormbit.sdk.utils.vkapi.TokenPool;
 import com.github.stormbit.sdk.utils.vkapi.calls.CallAsync;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.*;
-import java.util.stream.IntStream;
 
 /**
  * Created by Storm-bit
@@ -16,79 +19,48 @@ import java.util.stream.IntStream;
  */
 public class ExecutorUser extends Executor {
 
-    public ExecutorUser(Auth auth) {
-        super(auth);
+    public ExecutorUser(Client client, Auth auth) {
+        super(auth, new TokenPool(auth.getLogin(), RateLimiter.forKey(auth.getLogin(), RateLimiter.USER_LIMIT)), client.runtime());
     }
 
     @Override
-    protected void executing() {
+    protected void executing(List<CallAsync> tmpQueue, TokenPool.Token token) {
 
-        List<CallAsync> tmpQueue = new ArrayList<>();
-        int count = 0;
+        String method = "execute";
 
-        for (Iterator<CallAsync> iterator = queue.iterator(); iterator.hasNext() && count < 25; count++) {
-            tmpQueue.add(iterator.next());
+        if (!Utils._hashes.has(method)) {
+            Utils.get_hash(_auth, method);
         }
 
-        if (!tmpQueue.isEmpty()) {
-            for (CallAsync item : tmpQueue) {
-                String method = item.getMethodName();
-                JSONObject params = item.getParams();
+        String code = codeForExecute(tmpQueue);
 
-                if (!Utils._hashes.has(method)) {
-                    Utils.get_hash(_auth, method);
-                }
+        Map<String, Object> prms = new HashMap<>();
+        prms.put("act", "a_run_method");
+        prms.put("al", 1);
+        prms.put("hash", Utils._hashes.get(method));
+        prms.put("method", method);
+        prms.put("param_v", Utils.version);
+        prms.put("param_code", code);
 
-                queue.removeAll(tmpQueue);
+        // Execute
+        String responseString = _auth.session.post(Utils.URL)
+                .body(prms)
+                .send().readToText().replaceAll("[<!>]", "").substring(2);
 
-                JSONObject data = new JSONObject();
-                data.put("act", "a_run_method");
-                data.put("al", 1);
-                data.put("hash", Utils._hashes.get(method));
-                data.put("method", method);
-                data.put("param_v", Utils.version);
-
-                for (String key : params.keySet()) {
-                    data.put("param_" + key, params.get(key));
-                }
-
-                Map<String, Object> prms = new HashMap<>();
-                for (String key : data.keySet()) {
-                    prms.put(key, data.get(key));
-                }
-
-                // Execute
-                if (count > 0) {
-
-                    String responseString = _auth.session.post(Utils.URL)
-                            .body(prms)
-                            .send().readToText().replaceAll("[<!>]", "").substring(2);
-
-                    if (LOG_REQUESTS) {
-                        LOG.error("New executing request response: {}", responseString);
-                    }
-
-                    JSONObject response;
-
-                    try {
-                        response = new JSONObject(new JSONObject(responseString).getJSONArray("payload").getJSONArray(1).getString(0));
-                    } catch (JSONException e) {
-                        tmpQueue.forEach(call -> call.getCallback().onResult("false"));
-                        LOG.error("Bad response from executing: {}, params: {}", responseString, data.toString());
-                        return;
-                    }
-
-                    if (!response.has("response")) {
-                        LOG.error("No 'response' object when executing code, VK response: {}", response);
-                        tmpQueue.forEach(call -> call.getCallback().onResult("false"));
-                        return;
-                    }
+        if (LOG_REQUESTS) {
+            LOG.error("New executing request response: {}", responseString);
+        }
 
-                    Object responses = response.get("response");
+        JSONObject response;
 
-                    IntStream.range(0, count).forEachOrdered(i -> tmpQueue.get(i).getCallback().onResult(responses));
-                }
-            }
+        try {
+            response = new JSONObject(new JSONObject(responseString).getJSONArray("payload").getJSONArray(1).getString(0));
+        } catch (JSONException e) {
+            LOG.error("Bad response from executing: {}, code: {}", responseString, code);
+            tmpQueue.forEach(call -> retryOrFail(call, new VkApiException(VkApiException.BAD_RESPONSE, "Bad response: " + responseString, call.getMethodName())));
+            return;
         }
+
+        handleResponses(tmpQueue, response, token);
     }
 }
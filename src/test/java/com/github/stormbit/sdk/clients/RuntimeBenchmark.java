@@ -0,0 +1,153 @@
+package com.github.stormbit.sdk.clients;
+
+import com.github.stormbit.sdk.utils.vkapi.RateLimiter;
+import com.github.stormbit.sdk.utils.vkapi.Transport;
+import com.github.stormbit.sdk.utils.vkapi.UploadSource;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compare runtimes of client on handlers of messages that wait for callSync:
+ * cached pool (as before runtimes), bounded pool of platform threads and virtual threads.
+ * <p>
+ * Messages go through longpoll dispatch of group client, and every handler makes 'users.get' by callSync,
+ * answer of which is delayed by stub transport. Every token allows 20 requests per second,
+ * so client has enough tokens that rate limiter does not slow handlers.
+ * <p>
+ * Run from test classpath with: java -Dlog4j.configuration=file:log4j.properties RuntimeBenchmark [messages] [callSync millis]
+ * Virtual threads are measured only on JDK 21+.
+ */
+public class RuntimeBenchmark {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RuntimeBenchmark.class);
+
+    public static void main(String[] args) throws InterruptedException {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        long blocking = args.length > 1 ? Long.parseLong(args[1]) : 100;
+
+        run("cached", new ClientRuntime("vk-bot-cached", Executors.newCachedThreadPool()), messages, blocking);
+        run("pool", new ClientRuntime("vk-bot-pool", ClientRuntime.DEFAULT_POOL_SIZE, messages), messages, blocking);
+        run("virtual", ClientRuntime.virtual("vk-bot-virtual"), messages, blocking);
+    }
+
+    private static void run(String name, ClientRuntime runtime, int messages, long blocking) throws InterruptedException {
+        StubTransport transport = new StubTransport(blocking);
+        Group group = new Group(tokens(name, messages), 1, runtime, transport);
+
+        CountDownLatch done = new CountDownLatch(messages);
+
+        group.onMessage(message -> {
+            group.api().callSync("users.get", "user_ids", message.authorId());
+            done.countDown();
+        });
+
+        JSONArray updates = new JSONArray();
+
+        for (int i = 1; i <= messages; i++) {
+            updates.put(new JSONObject()
+                    .put("type", "message_new")
+                    .put("object", new JSONObject()
+                            .put("id", i)
+                            .put("peer_id", i)
+                            .put("from_id", i)
+                            .put("date", 0)
+                            .put("text", "benchmark")
+                            .put("attachments", new JSONArray())
+                            .put("random_id", 0)));
+        }
+
+        long start = System.nanoTime();
+
+        group.longPoll().handleUpdates(updates);
+        done.await();
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        LOG.info("{}: {} messages with callSync of {} ms handled in {} ms ({} messages/s), {}",
+                name, messages, blocking, millis, Math.round(messages * 1000.0 / Math.max(1, millis)), runtime);
+
+        transport.stop();
+        group.longPoll().off();
+        runtime.shutdown();
+    }
+
+    /**
+     * @return enough tokens to send callSync of all messages without waiting for permits
+     */
+    private static List<String> tokens(String name, int messages) {
+        List<String> tokens = new ArrayList<>();
+
+        for (int i = 0; i <= messages / RateLimiter.GROUP_LIMIT; i++) {
+            tokens.add("benchmark-" + name + "-" + i);
+        }
+
+        return tokens;
+    }
+
+    /**
+     * Answers of VK without network: longpoll server, and 'users.get' that takes the given time
+     */
+    private static final class StubTransport implements Transport {
+        private final long blocking;
+        private final CountDownLatch stopped = new CountDownLatch(1);
+
+        private StubTransport(long blocking) {
+            this.blocking = blocking;
+        }
+
+        @Override
+        public String post(String url, Map<String, Object> form) {
+            if (url.endsWith("groups.getLongPollServer")) {
+                return new JSONObject().put("response", new JSONObject()
+                        .put("key", "benchmark")
+                        .put("server", "https://lp.vk.com/benchmark")
+                        .put("ts", "1")).toString();
+            }
+
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(blocking));
+
+            return new JSONObject().put("response", new JSONArray().put(new JSONObject().put("id", form.get("user_ids")))).toString();
+        }
+
+        @Override
+        public CompletableFuture<String> postAsync(String url, Map<String, Object> form) {
+            return CompletableFuture.supplyAsync(() -> post(url, form));
+        }
+
+        /**
+         * Longpoll server has no updates, updates are given to client directly
+         */
+        @Override
+        public Reader get(String url, int timeoutMillis) {
+            try {
+                stopped.await(25, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return new StringReader("{\"ts\": \"1\", \"updates\": []}");
+        }
+
+        @Override
+        public String postMultipart(String url, String field, String fileName, UploadSource source) {
+            throw new UnsupportedOperationException("Benchmark does not upload files");
+        }
+
+        private void stop() {
+            stopped.countDown();
+        }
+    }
+}
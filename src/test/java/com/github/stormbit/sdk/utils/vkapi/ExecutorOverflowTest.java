@@ -0,0 +1,388 @@
+package com.github.stormbit.sdk.utils.vkapi;
+
+import com.github.stormbit.sdk.clients.ClientRuntime;
+import com.github.stormbit.sdk.exceptions.VkApiException;
+import com.github.stormbit.sdk.utils.vkapi.calls.CallAsync;
+import com.github.stormbit.sdk.utils.vkapi.calls.CallQueue;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Many threads send calls through executor with small queue.
+ * Every call must get exactly one result: response, or error if it was rejected or dropped.
+ * <p>
+ * Errors of 'execute' requests: every failed call gets its own error, and only calls that can be sent again are retried.
+ */
+public class ExecutorOverflowTest {
+
+    private static final int PRODUCERS = 32;
+    private static final int CALLS_PER_PRODUCER = 500;
+    private static final int CALLS = PRODUCERS * CALLS_PER_PRODUCER;
+
+    private final AtomicIntegerArray responses = new AtomicIntegerArray(CALLS);
+    private final AtomicIntegerArray errors = new AtomicIntegerArray(CALLS);
+    private final CountDownLatch results = new CountDownLatch(CALLS);
+
+    /**
+     * Ids of calls of every 'execute' request, and tokens of requests
+     */
+    private final List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> batchTokens = Collections.synchronizedList(new ArrayList<>());
+    private final Map<Integer, CompletableFuture<Object>> futures = new ConcurrentHashMap<>();
+
+    private int queueCapacity;
+    private CallQueue.Overflow queueOverflow;
+    private ClientRuntime runtime;
+
+    @Before
+    public void setUp() {
+        queueCapacity = Executor.QUEUE_CAPACITY;
+        queueOverflow = Executor.QUEUE_OVERFLOW;
+        runtime = new ClientRuntime("executor-test", 8, 10000);
+    }
+
+    @After
+    public void tearDown() {
+        Executor.QUEUE_CAPACITY = queueCapacity;
+        Executor.QUEUE_OVERFLOW = queueOverflow;
+        runtime.shutdown();
+    }
+
+    @Test
+    public void block() throws InterruptedException {
+        run(CallQueue.Overflow.BLOCK);
+
+        assertEquals(CALLS, count(responses));
+    }
+
+    @Test
+    public void failFast() throws InterruptedException {
+        run(CallQueue.Overflow.FAIL_FAST);
+
+        assertTrue("Queue was never full", count(errors) > 0);
+    }
+
+    @Test
+    public void dropOldest() throws InterruptedException {
+        run(CallQueue.Overflow.DROP_OLDEST);
+
+        assertTrue("Queue was never full", count(errors) > 0);
+    }
+
+    @Test
+    public void fullPoolOfCallbacks() throws InterruptedException {
+        ClientRuntime busy = new ClientRuntime("executor-test-busy", 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try {
+            // Callbacks take the only thread and the only place in queue
+            busy.service().execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                }
+            });
+            busy.service().execute(() -> {
+            });
+
+            Executor executor = new Executor(new Auth(), new TokenPool("executor-test-busy", new RateLimiter(2000)), busy) {
+                @Override
+                protected void executing(List<CallAsync> calls, TokenPool.Token token) {
+                    calls.forEach(call -> call.getCallback().onResult(call.getParams().getInt("id")));
+                }
+            };
+
+            CountDownLatch done = new CountDownLatch(100);
+
+            for (int id = 0; id < 100; id++) {
+                int callId = id;
+
+                executor.execute(new CallAsync("users.get", new JSONObject().put("id", id), CallAsync.Priority.NORMAL,
+                        response -> {
+                            responses.incrementAndGet(callId);
+                            done.countDown();
+                        },
+                        error -> {
+                            errors.incrementAndGet(callId);
+                            done.countDown();
+                        }));
+            }
+
+            assertTrue("Only " + (100 - done.getCount()) + " calls got result", done.await(10, TimeUnit.SECONDS));
+            assertEquals(100, count(responses));
+        } finally {
+            release.countDown();
+            busy.shutdown();
+        }
+    }
+
+    private void run(CallQueue.Overflow overflow) throws InterruptedException {
+        Executor.QUEUE_CAPACITY = 64;
+        Executor.QUEUE_OVERFLOW = overflow;
+
+        Executor executor = new Executor(new Auth(), new TokenPool("executor-test-" + overflow, new RateLimiter(2000)), runtime) {
+            @Override
+            protected void executing(List<CallAsync> calls, TokenPool.Token token) {
+
+                // Request takes some time, so queue is full most of the time
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+
+                calls.forEach(call -> call.getCallback().onResult(call.getParams().getInt("id")));
+            }
+        };
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int p = 0; p < PRODUCERS; p++) {
+            int first = p * CALLS_PER_PRODUCER;
+
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                for (int id = first; id < first + CALLS_PER_PRODUCER; id++) {
+                    executor.execute(call(id));
+                }
+            }, "producer-" + p));
+        }
+
+        threads.forEach(Thread::start);
+        start.countDown();
+
+        assertTrue("Only " + (CALLS - results.getCount()) + " calls got result", results.await(60, TimeUnit.SECONDS));
+
+        // Duplicated results would come after the last one
+        Thread.sleep(100);
+
+        for (int id = 0; id < CALLS; id++) {
+            assertEquals("Call " + id + " got " + responses.get(id) + " responses and " + errors.get(id) + " errors",
+                    1, responses.get(id) + errors.get(id));
+        }
+    }
+
+    private CallAsync call(int id) {
+        CallAsync.Priority[] priorities = CallAsync.Priority.values();
+        CallAsync.Priority priority = priorities[ThreadLocalRandom.current().nextInt(priorities.length)];
+
+        return new CallAsync("users.get", new JSONObject().put("id", id), priority,
+                response -> {
+                    responses.incrementAndGet(id);
+                    results.countDown();
+                },
+                error -> {
+                    errors.incrementAndGet(id);
+                    results.countDown();
+                });
+    }
+
+    private static int count(AtomicIntegerArray array) {
+        int count = 0;
+
+        for (int i = 0; i < CALLS; i++) {
+            count += array.get(i);
+        }
+
+        return count;
+    }
+
+    @Test
+    public void executeErrorsGoToTheirCalls() throws Exception {
+        Executor executor = stub(new TokenPool("executor-test-errors", new RateLimiter(2000)), ExecutorOverflowTest::answer);
+        executor.setRetryPolicy(RetryPolicy.none());
+
+        send(executor,
+                call("users.get", params(0, 0)),
+                call("users.get", params(1, 100)),
+                call("users.get", params(2, 0)),
+                call("users.get", params(3, 113)));
+
+        assertEquals(0, result(0).get(10, TimeUnit.SECONDS));
+        assertEquals(100, errorCode(result(1)));
+        assertEquals(2, result(2).get(10, TimeUnit.SECONDS));
+        assertEquals(113, errorCode(result(3)));
+        assertEquals(Collections.singletonList(Arrays.asList(0, 1, 2, 3)), batches);
+    }
+
+    @Test
+    public void onlyFailedCallsAreSentAgain() throws Exception {
+        Executor executor = stub(new TokenPool("executor-test-resend", new RateLimiter(2000)), ExecutorOverflowTest::answer);
+
+        send(executor,
+                call("users.get", params(0, 0)),
+                call("users.get", params(1, 0)),
+                call("users.get", params(2, VkApiException.TOO_MANY_REQUESTS)),
+                call("users.get", params(3, 0)));
+
+        for (int id = 0; id < 4; id++) {
+            assertEquals(id, result(id).get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(Arrays.asList(Arrays.asList(0, 1, 2, 3), Collections.singletonList(2)), batches);
+    }
+
+    @Test
+    public void rateLimitOfTheOnlyTokenIsNotRetried() throws Exception {
+        Executor executor = stub(new TokenPool("executor-test-one-token", new RateLimiter(2000)), ExecutorOverflowTest::answer);
+
+        send(executor,
+                call("users.get", params(0, VkApiException.RATE_LIMIT_REACHED)),
+                call("users.get", params(1, VkApiException.TOO_MANY_REQUESTS)));
+
+        assertEquals(VkApiException.RATE_LIMIT_REACHED, errorCode(result(0)));
+        assertEquals(1, result(1).get(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(Arrays.asList(0, 1), Collections.singletonList(1)), batches);
+    }
+
+    @Test
+    public void rateLimitIsRetriedWithOtherToken() throws Exception {
+        TokenPool tokens = new TokenPool(Arrays.asList("executor-test-first", "executor-test-second"), 2000);
+        Executor executor = stub(tokens, ExecutorOverflowTest::answer);
+
+        send(executor,
+                call("users.get", params(0, VkApiException.RATE_LIMIT_REACHED)),
+                call("users.get", params(1, 0)));
+
+        assertEquals(0, result(0).get(10, TimeUnit.SECONDS));
+        assertEquals(1, result(1).get(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(Arrays.asList(0, 1), Collections.singletonList(0)), batches);
+        assertNotEquals("Call was sent again with evicted token", batchTokens.get(0), batchTokens.get(1));
+        assertEquals(1, tokens.available());
+    }
+
+    @Test
+    public void networkErrorRetriesOnlySendWithRandomId() throws Exception {
+        Executor executor = stub(new TokenPool("executor-test-network", new RateLimiter(2000)), calls -> {
+            if (batches.size() == 1) {
+                throw new UncheckedIOException(new IOException("Read timed out"));
+            }
+            return answer(calls);
+        });
+
+        send(executor,
+                call("messages.send", params(0, 0)),
+                call("messages.send", params(1, 0).put("random_id", 5)));
+
+        assertEquals(VkApiException.NETWORK, errorCode(result(0)));
+        assertEquals(1, result(1).get(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(Arrays.asList(0, 1), Collections.singletonList(1)), batches);
+    }
+
+    /**
+     * Executor that answers 'execute' requests without network, retries are made without delay
+     */
+    private Executor stub(TokenPool tokens, Function<List<CallAsync>, JSONObject> answer) {
+        Executor executor = new Executor(new Auth(), tokens, runtime) {
+            @Override
+            protected void executing(List<CallAsync> calls, TokenPool.Token token) {
+                List<Integer> ids = new ArrayList<>();
+                calls.forEach(call -> ids.add(call.getParams().getInt("id")));
+
+                batchTokens.add(token.getKey());
+                batches.add(ids);
+
+                handleResponses(calls, answer.apply(calls), token);
+            }
+        };
+
+        executor.setRetryPolicy(new RetryPolicy()
+                .retry(VkApiException.TOO_MANY_REQUESTS, 3, 1)
+                .retry(VkApiException.RATE_LIMIT_REACHED, 3, 1)
+                .retry(VkApiException.NETWORK, 3, 1));
+
+        return executor;
+    }
+
+    /**
+     * Answer of VK: call with param 'error' fails with this code at the first attempt, others return their ids
+     */
+    private static JSONObject answer(List<CallAsync> calls) {
+        JSONArray response = new JSONArray();
+        JSONArray errors = new JSONArray();
+
+        for (CallAsync call : calls) {
+            int code = call.getParams().optInt("error");
+
+            if (code != 0 && call.getFailedAttempts() == 0) {
+                response.put(false);
+                errors.put(new JSONObject()
+                        .put("method", call.getMethodName())
+                        .put("error_code", code)
+                        .put("error_msg", "Error " + code));
+            } else {
+                response.put(call.getParams().getInt("id"));
+            }
+        }
+
+        JSONObject answer = new JSONObject().put("response", response);
+
+        return errors.length() > 0 ? answer.put("execute_errors", errors) : answer;
+    }
+
+    private static JSONObject params(int id, int error) {
+        JSONObject params = new JSONObject().put("id", id);
+
+        return error != 0 ? params.put("error", error) : params;
+    }
+
+    /**
+     * @return call which result is returned by {@link #result(int)} with id from params
+     */
+    private CallAsync call(String method, JSONObject params) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        futures.put(params.getInt("id"), result);
+
+        return new CallAsync(method, params, CallAsync.Priority.NORMAL, result::complete, result::completeExceptionally);
+    }
+
+    private CompletableFuture<Object> result(int id) {
+        return futures.get(id);
+    }
+
+    /**
+     * Put all calls to queue before draining, so they are sent in one 'execute' request
+     */
+    private static void send(Executor executor, CallAsync... calls) {
+        for (int i = 0; i < calls.length - 1; i++) {
+            executor.getQueue().put(calls[i]);
+        }
+        executor.execute(calls[calls.length - 1]);
+    }
+
+    private static int errorCode(CompletableFuture<Object> result) throws InterruptedException, TimeoutException {
+        try {
+            fail("Call got response " + result.get(10, TimeUnit.SECONDS));
+        } catch (ExecutionException e) {
+            return ((VkApiException) e.getCause()).getCode();
+        }
+        return 0;
+    }
+}
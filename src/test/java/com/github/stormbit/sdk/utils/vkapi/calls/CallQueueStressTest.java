@@ -0,0 +1,191 @@
+package com.github.stormbit.sdk.utils.vkapi.calls;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Many threads put calls to small queue while one thread drains it, like executor does.
+ * Every call must be taken from queue, rejected or dropped exactly once,
+ * and dropped calls must get their errors.
+ */
+public class CallQueueStressTest {
+
+    private static final int PRODUCERS = 32;
+    private static final int CALLS_PER_PRODUCER = 2000;
+    private static final int CALLS = PRODUCERS * CALLS_PER_PRODUCER;
+    private static final int CAPACITY = 64;
+
+    /**
+     * Draining of queue under test: {@link CallQueue} or {@link PriorityCallQueue}
+     */
+    private interface Drain {
+        int drainTo(Collection<CallAsync> calls, int max);
+    }
+
+    /**
+     * Count of every outcome of every call by its id
+     */
+    private static final class Outcomes {
+        private final AtomicIntegerArray taken = new AtomicIntegerArray(CALLS);
+        private final AtomicIntegerArray rejected = new AtomicIntegerArray(CALLS);
+        private final AtomicIntegerArray failed = new AtomicIntegerArray(CALLS);
+
+        private int count(AtomicIntegerArray outcome) {
+            int count = 0;
+
+            for (int i = 0; i < CALLS; i++) {
+                count += outcome.get(i);
+            }
+
+            return count;
+        }
+
+        private void assertEveryCallHandledOnce() {
+            for (int id = 0; id < CALLS; id++) {
+                assertEquals("Call " + id + " taken " + taken.get(id) + ", rejected " + rejected.get(id) + ", failed " + failed.get(id) + " times",
+                        1, taken.get(id) + rejected.get(id) + failed.get(id));
+            }
+        }
+    }
+
+    @Test
+    public void callQueueBlock() throws InterruptedException {
+        CallQueue queue = new CallQueue(CAPACITY, CallQueue.Overflow.BLOCK);
+        assertBlock(run(queue::put, queue::drainTo));
+    }
+
+    @Test
+    public void callQueueFailFast() throws InterruptedException {
+        CallQueue queue = new CallQueue(CAPACITY, CallQueue.Overflow.FAIL_FAST);
+        assertFailFast(run(queue::put, queue::drainTo));
+    }
+
+    @Test
+    public void callQueueDropOldest() throws InterruptedException {
+        CallQueue queue = new CallQueue(CAPACITY, CallQueue.Overflow.DROP_OLDEST);
+        assertDropOldest(run(queue::put, queue::drainTo));
+    }
+
+    @Test
+    public void priorityCallQueueBlock() throws InterruptedException {
+        PriorityCallQueue queue = new PriorityCallQueue(CAPACITY, CallQueue.Overflow.BLOCK);
+        assertBlock(run(queue::put, queue::drainTo));
+    }
+
+    @Test
+    public void priorityCallQueueFailFast() throws InterruptedException {
+        PriorityCallQueue queue = new PriorityCallQueue(CAPACITY, CallQueue.Overflow.FAIL_FAST);
+        assertFailFast(run(queue::put, queue::drainTo));
+    }
+
+    @Test
+    public void priorityCallQueueDropOldest() throws InterruptedException {
+        PriorityCallQueue queue = new PriorityCallQueue(CAPACITY, CallQueue.Overflow.DROP_OLDEST);
+        assertDropOldest(run(queue::put, queue::drainTo));
+    }
+
+    private static void assertBlock(Outcomes outcomes) {
+        outcomes.assertEveryCallHandledOnce();
+        assertEquals(CALLS, outcomes.count(outcomes.taken));
+    }
+
+    private static void assertFailFast(Outcomes outcomes) {
+        outcomes.assertEveryCallHandledOnce();
+        assertEquals(0, outcomes.count(outcomes.failed));
+        assertTrue("Queue was never full", outcomes.count(outcomes.rejected) > 0);
+    }
+
+    private static void assertDropOldest(Outcomes outcomes) {
+        outcomes.assertEveryCallHandledOnce();
+        assertEquals(0, outcomes.count(outcomes.rejected));
+        assertTrue("Queue was never full", outcomes.count(outcomes.failed) > 0);
+    }
+
+    /**
+     * Put calls from many threads and drain them in one thread
+     */
+    private static Outcomes run(Predicate<CallAsync> put, Drain drain) throws InterruptedException {
+        Outcomes outcomes = new Outcomes();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch produced = new CountDownLatch(PRODUCERS);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int p = 0; p < PRODUCERS; p++) {
+            int first = p * CALLS_PER_PRODUCER;
+
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+
+                    for (int id = first; id < first + CALLS_PER_PRODUCER; id++) {
+                        if (!put.test(call(id, outcomes))) {
+                            outcomes.rejected.incrementAndGet(id);
+                        }
+                    }
+                } catch (InterruptedException ignored) {
+                } finally {
+                    produced.countDown();
+                }
+            }, "producer-" + p));
+        }
+
+        Thread consumer = new Thread(() -> {
+            List<CallAsync> batch = new ArrayList<>(25);
+
+            while (true) {
+                boolean done = produced.getCount() == 0;
+
+                if (drain.drainTo(batch, 25) == 0) {
+                    if (done) {
+                        return;
+                    }
+
+                    Thread.yield();
+                    continue;
+                }
+
+                for (CallAsync call : batch) {
+                    outcomes.taken.incrementAndGet(call.getParams().getInt("id"));
+                }
+                batch.clear();
+
+                // Consumer is slower than producers, so queue is full most of the time
+                LockSupport.parkNanos(20000);
+            }
+        }, "consumer");
+
+        threads.forEach(Thread::start);
+        consumer.start();
+        start.countDown();
+
+        assertTrue("Producers did not finish", produced.await(60, TimeUnit.SECONDS));
+        consumer.join(TimeUnit.SECONDS.toMillis(60));
+        assertTrue("Consumer did not finish", !consumer.isAlive());
+
+        return outcomes;
+    }
+
+    private static CallAsync call(int id, Outcomes outcomes) {
+        CallAsync.Priority[] priorities = CallAsync.Priority.values();
+        CallAsync.Priority priority = priorities[ThreadLocalRandom.current().nextInt(priorities.length)];
+
+        return new CallAsync("users.get", new JSONObject().put("id", id), priority,
+                response -> {
+                    throw new AssertionError("Queue must not return response to call " + id);
+                },
+                error -> outcomes.failed.incrementAndGet(id));
+    }
+}